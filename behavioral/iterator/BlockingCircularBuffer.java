@@ -0,0 +1,336 @@
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounded circular buffer that can be used wherever a BlockingQueue is
+// expected. Unlike CircularBuffer it never grows. When it is full, put()
+// applies the OverflowPolicy: wait for space, drop the new item, overwrite
+// the oldest item or throw an IllegalStateException. The non-blocking offer()
+// overwrites the oldest item under DROP_OLDEST and otherwise returns false,
+// as required by the BlockingQueue contract. Items rejected by offer() under
+// DROP_NEWEST count as dropped, just like those dropped by put().
+//
+// Iterators are weakly consistent: they traverse a snapshot of the items
+// taken when they were created and never throw a
+// ConcurrentModificationException. Their remove() takes the last returned
+// item out of the buffer, if it is still there.
+
+public class BlockingCircularBuffer<E> extends AbstractQueue<E>
+        implements BlockingQueue<E> {
+
+    private final E[] buffer;
+    private final OverflowPolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private int start = 0;
+    private int count = 0;
+    private long dropped = 0;
+
+    public BlockingCircularBuffer(int capacity, OverflowPolicy policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.buffer = (E[]) new Object[capacity];
+        this.policy = policy;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return policy;
+    }
+
+    public long getDroppedCount() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return buffer.length - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E item) {
+        checkNotNull(item);
+        lock.lock();
+        try {
+            if (count == buffer.length) {
+                if (policy == OverflowPolicy.DROP_NEWEST) {
+                    dropped++;
+                }
+                if (policy != OverflowPolicy.DROP_OLDEST) {
+                    return false;
+                }
+                dequeue();
+                dropped++;
+            }
+            enqueue(item);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E item, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        checkNotNull(item);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            if (count == buffer.length && policy == OverflowPolicy.BLOCK) {
+                while (count == buffer.length) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = notFull.awaitNanos(nanos);
+                }
+            }
+            return offer(item);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(E item) throws InterruptedException {
+        checkNotNull(item);
+        lock.lockInterruptibly();
+        try {
+            if (count == buffer.length) {
+                switch (policy) {
+                    case BLOCK:
+                        while (count == buffer.length) {
+                            notFull.await();
+                        }
+                        break;
+                    case DROP_NEWEST:
+                        dropped++;
+                        return;
+                    case DROP_OLDEST:
+                        dequeue();
+                        dropped++;
+                        break;
+                    case FAIL:
+                        throw new IllegalStateException("Buffer is full");
+                }
+            }
+            enqueue(item);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        lock.lock();
+        try {
+            return count == 0 ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        lock.lock();
+        try {
+            return count == 0 ? null : buffer[start];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object item) {
+        lock.lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                if (buffer[(start + i) % buffer.length].equals(item)) {
+                    removeAt(i);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            Arrays.fill(buffer, null);
+            start = 0;
+            count = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> collection, int maxElements) {
+        if (collection == this) {
+            throw new IllegalArgumentException();
+        }
+        if (maxElements <= 0) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            int drained = Math.min(maxElements, count);
+            for (int i = 0; i < drained; i++) {
+                collection.add(dequeue());
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        lock.lock();
+        try {
+            Object[] items = new Object[count];
+            for (int i = 0; i < count; i++) {
+                items[i] = buffer[(start + i) % buffer.length];
+            }
+            return items;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private final Object[] items = toArray();
+            private int cursor = 0;
+            private E lastReturned;
+
+            public boolean hasNext() {
+                return cursor < items.length;
+            }
+
+            public E next() {
+                if (cursor >= items.length) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = (E) items[cursor++];
+                return lastReturned;
+            }
+
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                lock.lock();
+                try {
+                    for (int i = 0; i < count; i++) {
+                        if (buffer[(start + i) % buffer.length] ==
+                                lastReturned) {
+                            removeAt(i);
+                            break;
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                lastReturned = null;
+            }
+        };
+    }
+
+    private void enqueue(E item) {
+        buffer[(start + count++) % buffer.length] = item;
+        notEmpty.signal();
+    }
+
+    private E dequeue() {
+        E value = buffer[start];
+        buffer[start] = null;
+        start = (start + 1) % buffer.length;
+        count--;
+        notFull.signal();
+        return value;
+    }
+
+    private void removeAt(int index) {
+        for (int j = index; j < count - 1; j++) {
+            buffer[(start + j) % buffer.length] =
+                buffer[(start + j + 1) % buffer.length];
+        }
+        buffer[(start + count - 1) % buffer.length] = null;
+        count--;
+        notFull.signal();
+    }
+
+    private static void checkNotNull(Object item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+// Waiting threads sleep on a condition variable. The lock is only taken by
+// signalAll() when at least one thread is waiting, so that the writers and
+// readers do not contend on it while the buffer is neither full nor empty.
+
+public class BlockingWaitStrategy implements WaitStrategy {
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    @Override
+    public void waitFor(BooleanSupplier condition)
+            throws InterruptedException {
+        if (condition.getAsBoolean()) {
+            return;
+        }
+        lock.lock();
+        waiters.incrementAndGet();
+        try {
+            while (!condition.getAsBoolean()) {
+                changed.await();
+            }
+        } finally {
+            waiters.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void signalAll() {
+        if (waiters.get() > 0) {
+            lock.lock();
+            try {
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -1,36 +1,65 @@
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class CircularBuffer<T> implements Iterable<T> {
 
+    private final GrowthPolicy growthPolicy;
     private T[] buffer;
     private int start = 0;
     private int end = 0;
+    private int peakSize = 0;
+    private int readsSinceCheck = 0;
+    private long resizeCount = 0;
+    private long copiedElements = 0;
+
+    public CircularBuffer(int size, GrowthPolicy growthPolicy) {
+        this.buffer = (T[]) new Object[size];
+        this.growthPolicy = growthPolicy;
+    }
 
     public CircularBuffer(int size) {
-        buffer = (T[]) new Object[size];
+        this(size, new HysteresisGrowthPolicy());
     }
 
     public CircularBuffer() {
-        buffer = (T[]) new Object[8];
+        this(8);
     }
 
     public int size() {
         return end - start;
     }
 
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public long getResizeCount() {
+        return resizeCount;
+    }
+
+    public long getCopiedElements() {
+        return copiedElements;
+    }
+
     public T read() {
         if (end <= start) {
             throw new NoSuchElementException();
         }
         T value = buffer[start++ % buffer.length];
-        removeOffset();
+        consumed(1);
         return value;
     }
 
     public void write(T item) {
-        resize();
+        grow(end - start + 1);
         buffer[end++ % buffer.length] = item;
+        peakSize = Math.max(peakSize, end - start);
     }
 
     @Override
@@ -51,27 +80,174 @@ public class CircularBuffer<T> implements Iterable<T> {
         };
     }
 
-    private void resize() {
-        T[] newBuffer = null;
+    @Override
+    public Spliterator<T> spliterator() {
+        return new BufferSpliterator<>(buffer, start, end);
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public void writeAll(T[] src, int off, int len) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        grow(end - start + len);
 
-        if ((end - start) >= buffer.length) {
-            newBuffer = (T[]) new Object[buffer.length * 2];
-        } else if ((end - start) < (buffer.length / 4) && buffer.length > 8) {
-            newBuffer = (T[]) new Object[buffer.length / 2];
+        int index = end % buffer.length;
+        int first = Math.min(len, buffer.length - index);
+        System.arraycopy(src, off, buffer, index, first);
+        System.arraycopy(src, off + first, buffer, 0, len - first);
+        end += len;
+        peakSize = Math.max(peakSize, end - start);
+    }
+
+    public int drainTo(T[] dst, int max) {
+        int count = Math.min(Math.min(max, dst.length), end - start);
+        if (count <= 0) {
+            return 0;
         }
 
-        if (newBuffer != null) {
-            for (int i = 0; i < (end - start); i++) {
-                newBuffer[i] = buffer[start + i];
+        int index = start % buffer.length;
+        int first = Math.min(count, buffer.length - index);
+        System.arraycopy(buffer, index, dst, 0, first);
+        System.arraycopy(buffer, 0, dst, first, count - first);
+        Arrays.fill(buffer, index, index + first, null);
+        Arrays.fill(buffer, 0, count - first, null);
+        start += count;
+        consumed(count);
+        return count;
+    }
+
+    // Each element is removed before it is passed to the consumer, so if the
+    // consumer throws, the buffer still holds exactly the elements after it.
+    public int drainTo(Consumer<? super T> consumer, int max) {
+        int count = Math.min(max, end - start);
+        if (count <= 0) {
+            return 0;
+        }
+
+        int from = start;
+        int index = start % buffer.length;
+        int first = Math.min(count, buffer.length - index);
+        try {
+            for (int i = index; i < index + first; i++) {
+                consumer.accept(take(i));
+            }
+            for (int i = 0; i < count - first; i++) {
+                consumer.accept(take(i));
             }
-            buffer = newBuffer;
+        } finally {
+            consumed(start - from);
+        }
+        return count;
+    }
+
+    private T take(int index) {
+        T value = buffer[index];
+        buffer[index] = null;
+        start++;
+        return value;
+    }
+
+    private void grow(int required) {
+        if (required > buffer.length) {
+            copy(growthPolicy.capacityFor(buffer.length, required));
         }
     }
 
+    // Asks the growth policy whether to shrink once per capacity worth of
+    // reads, passing the highest occupancy since the previous check. Only a
+    // buffer that stayed nearly empty for that long is shrunk, so a burst
+    // that is drained and refilled keeps its capacity.
+    private void consumed(int count) {
+        removeOffset();
+        readsSinceCheck += count;
+        if (readsSinceCheck >= buffer.length) {
+            int capacity = growthPolicy.capacityFor(buffer.length, peakSize);
+            if (capacity < buffer.length) {
+                copy(capacity);
+            }
+            readsSinceCheck = 0;
+            peakSize = end - start;
+        }
+    }
+
+    private void copy(int capacity) {
+        T[] newBuffer = (T[]) new Object[capacity];
+        int size = end - start;
+        int index = start % buffer.length;
+        int first = Math.min(size, buffer.length - index);
+        System.arraycopy(buffer, index, newBuffer, 0, first);
+        System.arraycopy(buffer, 0, newBuffer, first, size - first);
+        buffer = newBuffer;
+        start = 0;
+        end = size;
+        resizeCount++;
+        copiedElements += size;
+    }
+
     private void removeOffset() {
         int offset = start / buffer.length;
         start -= offset * buffer.length;
         end -= offset * buffer.length;
     }
+
+    private static final class BufferSpliterator<T> implements Spliterator<T> {
+
+        private final T[] buffer;
+        private int index;
+        private final int fence;
+
+        private BufferSpliterator(T[] buffer, int index, int fence) {
+            this.buffer = buffer;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (index >= fence) {
+                return false;
+            }
+            action.accept(buffer[index++ % buffer.length]);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            int from = index % buffer.length;
+            int first = Math.min(fence - index, buffer.length - from);
+            for (int i = from; i < from + first; i++) {
+                action.accept(buffer[i]);
+            }
+            for (int i = 0; i < fence - index - first; i++) {
+                action.accept(buffer[i]);
+            }
+            index = fence;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int middle = (index + fence) >>> 1;
+            if (middle <= index) {
+                return null;
+            }
+            Spliterator<T> prefix =
+                new BufferSpliterator<>(buffer, index, middle);
+            index = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED |
+                   Spliterator.SUBSIZED;
+        }
+    }
 }
 
@@ -0,0 +1,183 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Measures the hand-off throughput between one producer and one consumer
+// thread. The lock-based CircularBuffer is bounded to the same capacity as the
+// lock-free SpscCircularBuffer, so that both runs exercise full and empty
+// buffer conditions in the same way. Both threads spin while waiting, so the
+// hand-off benchmarks need at least two cores to give meaningful numbers.
+//
+// The persistent buffer is measured on a single thread, once straight
+// through and once with the file closed and reopened half way, as a restarted
+// process would do. Run with:
+//
+//     javac *.java && java CircularBufferBenchmark [messages]
+
+public class CircularBufferBenchmark {
+
+    private static final int CAPACITY = 1024;
+    private static final int ITERATIONS = 5;
+
+    private static int messages = 1 << 24;
+
+    private static final Integer[] VALUES = new Integer[CAPACITY];
+
+    static {
+        for (int i = 0; i < VALUES.length; i++) {
+            VALUES[i] = i;
+        }
+    }
+
+    private static long lockedHandOff() throws InterruptedException {
+        CircularBuffer<Integer> buffer = new CircularBuffer<>(CAPACITY);
+        Lock lock = new ReentrantLock();
+        Thread producer = new Thread(() -> {
+            int i = 0;
+            while (i < messages) {
+                lock.lock();
+                try {
+                    if (buffer.size() < CAPACITY) {
+                        buffer.write(VALUES[i++ & (CAPACITY - 1)]);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+
+        long begin = System.nanoTime();
+        producer.start();
+        long sum = 0;
+        int received = 0;
+        while (received < messages) {
+            lock.lock();
+            try {
+                if (buffer.size() > 0) {
+                    sum += buffer.read();
+                    received++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        producer.join();
+        return checked(sum, System.nanoTime() - begin);
+    }
+
+    private static long spscHandOff() throws InterruptedException {
+        SpscCircularBuffer<Integer> buffer = new SpscCircularBuffer<>(CAPACITY);
+        Thread producer = new Thread(() -> {
+            int i = 0;
+            while (i < messages) {
+                if (buffer.offer(VALUES[i & (CAPACITY - 1)])) {
+                    i++;
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+
+        long begin = System.nanoTime();
+        producer.start();
+        long sum = 0;
+        int received = 0;
+        while (received < messages) {
+            Integer value = buffer.poll();
+            if (value != null) {
+                sum += value;
+                received++;
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        producer.join();
+        return checked(sum, System.nanoTime() - begin);
+    }
+
+    private static long mpmcHandOff(WaitStrategy waitStrategy)
+            throws InterruptedException {
+        MpmcCircularBuffer<Integer> buffer =
+            new MpmcCircularBuffer<>(CAPACITY, waitStrategy);
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < messages; i++) {
+                    buffer.put(VALUES[i & (CAPACITY - 1)]);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        long begin = System.nanoTime();
+        producer.start();
+        long sum = 0;
+        for (int i = 0; i < messages; i++) {
+            sum += buffer.take();
+        }
+        producer.join();
+        return checked(sum, System.nanoTime() - begin);
+    }
+
+    private static long persistentWriteRead(Path file, boolean restart)
+            throws IOException {
+        long begin = System.nanoTime();
+        long sum = 0;
+        PersistentCircularBuffer<Long> buffer = new PersistentCircularBuffer<>(
+            file, CAPACITY * 64, new LongRecordCodec());
+        for (int batch = 0; batch < messages / CAPACITY; batch++) {
+            if (restart && batch == messages / CAPACITY / 2) {
+                buffer.write((long) VALUES[0]);
+                buffer.close();
+                buffer = new PersistentCircularBuffer<>(
+                    file, CAPACITY * 64, new LongRecordCodec());
+                sum += buffer.read();
+            }
+            for (int i = 0; i < CAPACITY; i++) {
+                buffer.write((long) VALUES[i]);
+            }
+            for (int i = 0; i < CAPACITY; i++) {
+                sum += buffer.read();
+            }
+        }
+        buffer.close();
+        return checked(sum, System.nanoTime() - begin);
+    }
+
+    private static long checked(long sum, long elapsed) {
+        long expected = (long) (messages / CAPACITY) *
+                        (CAPACITY * (long) (CAPACITY - 1) / 2);
+        if (sum != expected) {
+            throw new IllegalStateException("Lost or duplicated messages");
+        }
+        return elapsed;
+    }
+
+    private static void report(String name, long elapsed) {
+        System.out.printf("%-28s %8.2f Mmsg/s%n",
+            name, messages * 1000.0 / elapsed);
+    }
+
+    public static void main(String[] args)
+            throws IOException, InterruptedException {
+        if (args.length > 0) {
+            messages = Integer.parseInt(args[0]) / CAPACITY * CAPACITY;
+        }
+        Path file = Files.createTempFile("buffer", ".dat");
+        for (int i = 0; i < ITERATIONS; i++) {
+            report("CircularBuffer (locked)", lockedHandOff());
+            report("SpscCircularBuffer", spscHandOff());
+            report("MpmcCircularBuffer (spin)",
+                mpmcHandOff(new BusySpinWaitStrategy()));
+            report("MpmcCircularBuffer (block)",
+                mpmcHandOff(new BlockingWaitStrategy()));
+            Files.delete(file);
+            report("PersistentCircularBuffer", persistentWriteRead(file, false));
+            Files.delete(file);
+            report("Persistent (restarted)", persistentWriteRead(file, true));
+        }
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+public class DoubleCircularBuffer implements Iterable<Double> {
+
+    private final GrowthPolicy growthPolicy;
+    private double[] buffer;
+    private int start = 0;
+    private int end = 0;
+    private int peakSize = 0;
+    private int readsSinceCheck = 0;
+    private long resizeCount = 0;
+    private long copiedElements = 0;
+
+    public DoubleCircularBuffer(int size, GrowthPolicy growthPolicy) {
+        this.buffer = new double[size];
+        this.growthPolicy = growthPolicy;
+    }
+
+    public DoubleCircularBuffer(int size) {
+        this(size, new HysteresisGrowthPolicy());
+    }
+
+    public DoubleCircularBuffer() {
+        this(8);
+    }
+
+    public int size() {
+        return end - start;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public long getResizeCount() {
+        return resizeCount;
+    }
+
+    public long getCopiedElements() {
+        return copiedElements;
+    }
+
+    public double read() {
+        if (end <= start) {
+            throw new NoSuchElementException();
+        }
+        double value = buffer[start++ % buffer.length];
+        consumed(1);
+        return value;
+    }
+
+    public void write(double item) {
+        grow(end - start + 1);
+        buffer[end++ % buffer.length] = item;
+        peakSize = Math.max(peakSize, end - start);
+    }
+
+    @Override
+    public PrimitiveIterator.OfDouble iterator() {
+        return new PrimitiveIterator.OfDouble() {
+            private int cursor = start;
+
+            public double nextDouble() {
+                if (cursor >= end) {
+                    throw new NoSuchElementException();
+                }
+                return buffer[cursor++ % buffer.length];
+            }
+
+            public boolean hasNext() {
+                return end - cursor > 0;
+            }
+        };
+    }
+
+    private void grow(int required) {
+        if (required > buffer.length) {
+            copy(growthPolicy.capacityFor(buffer.length, required));
+        }
+    }
+
+    private void consumed(int count) {
+        removeOffset();
+        readsSinceCheck += count;
+        if (readsSinceCheck >= buffer.length) {
+            int capacity = growthPolicy.capacityFor(buffer.length, peakSize);
+            if (capacity < buffer.length) {
+                copy(capacity);
+            }
+            readsSinceCheck = 0;
+            peakSize = end - start;
+        }
+    }
+
+    private void copy(int capacity) {
+        double[] newBuffer = new double[capacity];
+        int size = end - start;
+        int index = start % buffer.length;
+        int first = Math.min(size, buffer.length - index);
+        System.arraycopy(buffer, index, newBuffer, 0, first);
+        System.arraycopy(buffer, 0, newBuffer, first, size - first);
+        buffer = newBuffer;
+        start = 0;
+        end = size;
+        resizeCount++;
+        copiedElements += size;
+    }
+
+    private void removeOffset() {
+        int offset = start / buffer.length;
+        start -= offset * buffer.length;
+        end -= offset * buffer.length;
+    }
+}
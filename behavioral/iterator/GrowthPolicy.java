@@ -0,0 +1,8 @@
+// Decides the capacity of a CircularBuffer. The buffer asks for a larger
+// capacity whenever a write does not fit, passing the required size, and
+// periodically offers to shrink, passing the highest recent occupancy.
+
+public interface GrowthPolicy {
+
+    int capacityFor(int capacity, int size);
+}
@@ -0,0 +1,47 @@
+// Doubles the capacity whenever the buffer is full, but only halves it once
+// occupancy drops below an eighth. After shrinking the buffer is therefore at
+// most a quarter full and after growing at least half full, so a load that
+// oscillates around either threshold cannot trigger repeated resizes. As the
+// buffer passes its peak occupancy since its previous check, a buffer that
+// is regularly drained and refilled is not shrunk in between.
+
+public class HysteresisGrowthPolicy implements GrowthPolicy {
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final int minCapacity;
+    private final int maxCapacity;
+
+    public HysteresisGrowthPolicy(int minCapacity, int maxCapacity) {
+        if (minCapacity <= 0 || maxCapacity < minCapacity ||
+            maxCapacity > MAX_ARRAY_SIZE) {
+            throw new IllegalArgumentException(
+                "Invalid capacity range: " + minCapacity + "-" + maxCapacity);
+        }
+        this.minCapacity = minCapacity;
+        this.maxCapacity = maxCapacity;
+    }
+
+    public HysteresisGrowthPolicy() {
+        this(8, MAX_ARRAY_SIZE);
+    }
+
+    @Override
+    public int capacityFor(int capacity, int size) {
+        if (size > capacity) {
+            if (size > maxCapacity) {
+                throw new IllegalStateException(
+                    "Maximum capacity exceeded: " + maxCapacity);
+            }
+            long newCapacity = Math.max(capacity, minCapacity);
+            while (newCapacity < size) {
+                newCapacity *= 2;
+            }
+            return (int) Math.min(newCapacity, maxCapacity);
+        }
+        if (size < capacity / 8 && capacity / 2 >= minCapacity) {
+            return capacity / 2;
+        }
+        return capacity;
+    }
+}
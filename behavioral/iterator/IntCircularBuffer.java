@@ -0,0 +1,115 @@
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+public class IntCircularBuffer implements Iterable<Integer> {
+
+    private final GrowthPolicy growthPolicy;
+    private int[] buffer;
+    private int start = 0;
+    private int end = 0;
+    private int peakSize = 0;
+    private int readsSinceCheck = 0;
+    private long resizeCount = 0;
+    private long copiedElements = 0;
+
+    public IntCircularBuffer(int size, GrowthPolicy growthPolicy) {
+        this.buffer = new int[size];
+        this.growthPolicy = growthPolicy;
+    }
+
+    public IntCircularBuffer(int size) {
+        this(size, new HysteresisGrowthPolicy());
+    }
+
+    public IntCircularBuffer() {
+        this(8);
+    }
+
+    public int size() {
+        return end - start;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public long getResizeCount() {
+        return resizeCount;
+    }
+
+    public long getCopiedElements() {
+        return copiedElements;
+    }
+
+    public int read() {
+        if (end <= start) {
+            throw new NoSuchElementException();
+        }
+        int value = buffer[start++ % buffer.length];
+        consumed(1);
+        return value;
+    }
+
+    public void write(int item) {
+        grow(end - start + 1);
+        buffer[end++ % buffer.length] = item;
+        peakSize = Math.max(peakSize, end - start);
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int cursor = start;
+
+            public int nextInt() {
+                if (cursor >= end) {
+                    throw new NoSuchElementException();
+                }
+                return buffer[cursor++ % buffer.length];
+            }
+
+            public boolean hasNext() {
+                return end - cursor > 0;
+            }
+        };
+    }
+
+    private void grow(int required) {
+        if (required > buffer.length) {
+            copy(growthPolicy.capacityFor(buffer.length, required));
+        }
+    }
+
+    private void consumed(int count) {
+        removeOffset();
+        readsSinceCheck += count;
+        if (readsSinceCheck >= buffer.length) {
+            int capacity = growthPolicy.capacityFor(buffer.length, peakSize);
+            if (capacity < buffer.length) {
+                copy(capacity);
+            }
+            readsSinceCheck = 0;
+            peakSize = end - start;
+        }
+    }
+
+    private void copy(int capacity) {
+        int[] newBuffer = new int[capacity];
+        int size = end - start;
+        int index = start % buffer.length;
+        int first = Math.min(size, buffer.length - index);
+        System.arraycopy(buffer, index, newBuffer, 0, first);
+        System.arraycopy(buffer, 0, newBuffer, first, size - first);
+        buffer = newBuffer;
+        start = 0;
+        end = size;
+        resizeCount++;
+        copiedElements += size;
+    }
+
+    private void removeOffset() {
+        int offset = start / buffer.length;
+        start -= offset * buffer.length;
+        end -= offset * buffer.length;
+    }
+}
@@ -1,4 +1,16 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 // The iterator pattern is a behavioral software design pattern that provides a
 // way to access the elements of a container sequentially without exposing its
@@ -20,7 +32,42 @@ import java.util.NoSuchElementException;
 //
 // In the example below, the CircularBuffer class implements the standard Java
 // Iterable interface to enable the client to use for-each loops to access its
-// elements. It supports read / write operations and automatic resizing. 
+// elements. It supports read / write operations and automatic resizing. Bulk
+// writes and drains move whole batches with at most two array copies, one on
+// either side of the point where the buffer wraps around.
+// Its spliterator splits the live range of elements evenly, so that parallel
+// streams over the buffer make use of all available cores.
+// How the buffer grows and shrinks is decided by a GrowthPolicy. The default
+// HysteresisGrowthPolicy doubles the buffer when full but only halves it when
+// it stayed less than an eighth full for as many reads as its capacity, so
+// neither oscillating loads nor bursts that are drained and refilled cause
+// resize storms.
+//
+// SpscCircularBuffer is a fixed capacity, lock-free variant that can be
+// shared by exactly one writer and one reader thread without any locking.
+// MpmcCircularBuffer extends this to any number of writers and readers. Each
+// slot has its own sequence number, so that writers claim and publish slots
+// independently. Threads that need to wait for space or for elements do so
+// according to a pluggable WaitStrategy (busy spin, yield, park or block).
+//
+// IntCircularBuffer, LongCircularBuffer and DoubleCircularBuffer store their
+// elements in primitive arrays and expose primitive iterators, so that no
+// boxing takes place when buffering numeric values. They take the same
+// GrowthPolicy as CircularBuffer and resize with the same bulk array copies.
+//
+// PersistentCircularBuffer keeps fixed size records in a memory-mapped file,
+// encoded by a pluggable RecordCodec. Its read and write positions are stored
+// in a header page, so a restarted process resumes where the previous one
+// stopped. A writer and a reader that map the same file can also use it as
+// a single-producer single-consumer queue between threads or processes.
+//
+// BlockingCircularBuffer is a bounded BlockingQueue whose OverflowPolicy
+// decides what happens to a write into a full buffer: block the writer, drop
+// the new item, overwrite the oldest item or fail.
+//
+// TimeWindowedBuffer holds the values written over a trailing time window.
+// Expired values are evicted as time moves on, while the count, sum, minimum
+// and maximum of the window are maintained incrementally.
 
 public class Iterator {
 
@@ -117,7 +164,810 @@ public class Iterator {
         return testResult;
     }
 
-    public static void main(String[] args) {
+    private static boolean testWriteAll_WrapAround() {
+        CircularBuffer<Integer> buffer = new CircularBuffer<>(8);
+        for (int i = 0; i < 6; i++) {
+            buffer.write(i);
+        }
+        for (int i = 0; i < 5; i++) {
+            buffer.read();
+        }
+        buffer.writeAll(new Integer[] {-1, 6, 7, 8, 9, 10, -1}, 1, 5);
+
+        boolean testResult = buffer.size() == 6;
+        for (int i = 5; i <= 10; i++) {
+            testResult = testResult && buffer.read() == i;
+        }
+        return testResult;
+    }
+
+    private static boolean testWriteAll_BufferResize() {
+        CircularBuffer<Integer> buffer = new CircularBuffer<>(8);
+        Integer[] values = new Integer[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        buffer.write(-1);
+        buffer.writeAll(values, 0, values.length);
+
+        boolean testResult = buffer.size() == 101 && buffer.read() == -1;
+        for (int i = 0; i < 100; i++) {
+            testResult = testResult && buffer.read() == i;
+        }
+        return testResult;
+    }
+
+    private static boolean testWriteAll_OutOfBounds() {
+        CircularBuffer<Integer> buffer = new CircularBuffer<>();
+        try {
+            buffer.writeAll(new Integer[4], 2, 3);
+        } catch (IndexOutOfBoundsException e) {
+            return buffer.size() == 0;
+        }
+        return false;
+    }
+
+    private static boolean testDrainTo_Array() {
+        CircularBuffer<Integer> buffer = new CircularBuffer<>(8);
+        for (int i = 0; i < 6; i++) {
+            buffer.write(i);
+            buffer.read();
+        }
+        for (int i = 0; i < 7; i++) {
+            buffer.write(i);
+        }
+
+        Integer[] values = new Integer[10];
+        int count = buffer.drainTo(values, 5);
+        boolean testResult = count == 5 && buffer.size() == 2;
+        for (int i = 0; i < count; i++) {
+            testResult = testResult && values[i] == i;
+        }
+        count = buffer.drainTo(values, 5);
+        return testResult && count == 2 && values[0] == 5 && values[1] == 6 &&
+               buffer.size() == 0 && buffer.drainTo(values, 5) == 0;
+    }
+
+    private static boolean testDrainTo_Consumer() {
+        CircularBuffer<Integer> buffer = new CircularBuffer<>(8);
+        for (int i = 0; i < 5; i++) {
+            buffer.write(i);
+            buffer.read();
+        }
+        for (int i = 0; i < 8; i++) {
+            buffer.write(i);
+        }
+
+        List<Integer> values = new ArrayList<>();
+        int count = buffer.drainTo(values::add, 6);
+        boolean testResult = count == 6 && buffer.size() == 2;
+        for (int i = 0; i < count; i++) {
+            testResult = testResult && values.get(i) == i;
+        }
+        return testResult && buffer.read() == 6 && buffer.read() == 7;
+    }
+
+    private static boolean testDrainTo_ThrowingConsumer() {
+        CircularBuffer<Integer> buffer = new CircularBuffer<>(8);
+        for (int i = 0; i < 6; i++) {
+            buffer.write(i);
+        }
+
+        List<Integer> values = new ArrayList<>();
+        try {
+            buffer.drainTo(value -> {
+                if (value == 2) {
+                    throw new IllegalStateException();
+                }
+                values.add(value);
+            }, 6);
+            return false;
+        } catch (IllegalStateException e) {
+            return values.equals(Arrays.asList(0, 1)) &&
+                   buffer.size() == 3 && buffer.read() == 3;
+        }
+    }
+
+    private static boolean testSpliterator_Split() {
+        CircularBuffer<Integer> buffer = new CircularBuffer<>(16);
+        for (int i = 0; i < 12; i++) {
+            buffer.write(i);
+            buffer.read();
+        }
+        for (int i = 0; i < 10; i++) {
+            buffer.write(i);
+        }
+
+        Spliterator<Integer> suffix = buffer.spliterator();
+        Spliterator<Integer> prefix = suffix.trySplit();
+        List<Integer> values = new ArrayList<>();
+        prefix.forEachRemaining(values::add);
+        boolean testResult = values.size() == 5 && suffix.estimateSize() == 5;
+        while (suffix.tryAdvance(values::add));
+        for (int i = 0; i < 10; i++) {
+            testResult = testResult && values.get(i) == i;
+        }
+        return testResult &&
+               suffix.hasCharacteristics(Spliterator.SUBSIZED) &&
+               suffix.hasCharacteristics(Spliterator.ORDERED);
+    }
+
+    private static boolean testStream_Parallel() {
+        CircularBuffer<Integer> buffer = new CircularBuffer<>(1024);
+        for (int i = 0; i < 1000; i++) {
+            buffer.write(i);
+            buffer.read();
+        }
+        for (int i = 0; i < 1000; i++) {
+            buffer.write(i);
+        }
+
+        List<Integer> values = buffer.stream().parallel()
+                                     .collect(Collectors.toList());
+        boolean testResult = values.size() == 1000;
+        for (int i = 0; i < 1000; i++) {
+            testResult = testResult && values.get(i) == i;
+        }
+        return testResult &&
+               buffer.stream().parallel().mapToLong(i -> i).sum() == 499500;
+    }
+
+    private static boolean testGrowthPolicy_Hysteresis() {
+        CircularBuffer<Integer> buffer = new CircularBuffer<>(8);
+        for (int i = 0; i < 64; i++) {
+            buffer.write(i);
+        }
+        boolean testResult = buffer.capacity() == 64 &&
+                             buffer.getResizeCount() == 3 &&
+                             buffer.getCopiedElements() == 8 + 16 + 32;
+
+        for (int i = 0; i < 100; i++) {
+            while (buffer.size() > 15) {
+                buffer.read();
+            }
+            buffer.write(i);
+            while (buffer.size() < 33) {
+                buffer.write(i);
+            }
+        }
+        return testResult && buffer.getResizeCount() == 3;
+    }
+
+    private static boolean testGrowthPolicy_Shrink() {
+        CircularBuffer<Integer> buffer =
+            new CircularBuffer<>(8, new HysteresisGrowthPolicy(16, 1024));
+        for (int i = 0; i < 1024; i++) {
+            buffer.write(i);
+        }
+        boolean testResult = buffer.capacity() == 1024;
+        for (int i = 0; i < 1024; i++) {
+            buffer.read();
+            buffer.write(i);
+            buffer.read();
+        }
+        testResult = testResult && buffer.capacity() == 1024;
+        for (int i = 0; i < 4096; i++) {
+            buffer.write(i);
+            buffer.read();
+        }
+        return testResult && buffer.capacity() == 16 && buffer.size() == 0;
+    }
+
+    private static boolean testGrowthPolicy_BurstAndDrain() {
+        CircularBuffer<Integer> buffer = new CircularBuffer<>(8);
+        long resizeCount = 0;
+        for (int cycle = 0; cycle < 10; cycle++) {
+            for (int i = 0; i < 4096; i++) {
+                buffer.write(i);
+            }
+            while (buffer.size() > 0) {
+                buffer.read();
+            }
+            if (cycle == 0) {
+                resizeCount = buffer.getResizeCount();
+            }
+        }
+        return resizeCount == 9 && buffer.getResizeCount() == 9 &&
+               buffer.capacity() == 4096;
+    }
+
+    private static boolean testGrowthPolicy_MaxCapacity() {
+        CircularBuffer<Integer> buffer =
+            new CircularBuffer<>(8, new HysteresisGrowthPolicy(8, 12));
+        for (int i = 0; i < 12; i++) {
+            buffer.write(i);
+        }
+        try {
+            buffer.write(12);
+        } catch (IllegalStateException e) {
+            return buffer.capacity() == 12 && buffer.size() == 12 &&
+                   buffer.read() == 0;
+        }
+        return false;
+    }
+
+    private static boolean testSpscBuffer_InvalidCapacity() {
+        try {
+            new SpscCircularBuffer<Integer>(10);
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean testSpscBuffer_ReadWrite() {
+        SpscCircularBuffer<Integer> buffer = new SpscCircularBuffer<>(4);
+        boolean testResult = true;
+        for (int i = 0; i < 100; i++) {
+            buffer.write(i);
+            testResult = testResult && buffer.size() == 1;
+            testResult = testResult && buffer.read() == i;
+        }
+        return testResult && buffer.size() == 0;
+    }
+
+    private static boolean testSpscBuffer_Read_EmptyBuffer() {
+        SpscCircularBuffer<Integer> buffer = new SpscCircularBuffer<>(4);
+        try {
+            buffer.read();
+        } catch (NoSuchElementException e) {
+            return buffer.poll() == null;
+        }
+        return false;
+    }
+
+    private static boolean testSpscBuffer_Write_FullBuffer() {
+        SpscCircularBuffer<Integer> buffer = new SpscCircularBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            buffer.write(i);
+        }
+        try {
+            buffer.write(4);
+        } catch (IllegalStateException e) {
+            return !buffer.offer(4) && buffer.size() == 4;
+        }
+        return false;
+    }
+
+    private static boolean testSpscBuffer_ProducerConsumer()
+            throws InterruptedException {
+        SpscCircularBuffer<Integer> buffer = new SpscCircularBuffer<>(16);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 100_000; i++) {
+                while (!buffer.offer(i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+
+        boolean testResult = true;
+        for (int i = 0; i < 100_000; i++) {
+            Integer value;
+            while ((value = buffer.poll()) == null) {
+                Thread.yield();
+            }
+            testResult = testResult && value == i;
+        }
+        producer.join();
+        return testResult && buffer.size() == 0;
+    }
+
+    private static boolean testMpmcBuffer_ReadWrite() {
+        MpmcCircularBuffer<Integer> buffer = new MpmcCircularBuffer<>(4);
+        boolean testResult = true;
+        for (int i = 0; i < 100; i++) {
+            buffer.write(i);
+            testResult = testResult && buffer.size() == 1;
+            testResult = testResult && buffer.read() == i;
+        }
+        return testResult && buffer.size() == 0;
+    }
+
+    private static boolean testMpmcBuffer_Read_EmptyBuffer() {
+        MpmcCircularBuffer<Integer> buffer = new MpmcCircularBuffer<>(4);
+        try {
+            buffer.read();
+        } catch (NoSuchElementException e) {
+            return buffer.poll() == null;
+        }
+        return false;
+    }
+
+    private static boolean testMpmcBuffer_Write_FullBuffer() {
+        MpmcCircularBuffer<Integer> buffer = new MpmcCircularBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            buffer.write(i);
+        }
+        try {
+            buffer.write(4);
+        } catch (IllegalStateException e) {
+            return !buffer.offer(4) && buffer.size() == 4;
+        }
+        return false;
+    }
+
+    private static boolean testMpmcBuffer_ProducersConsumers(
+            int capacity, WaitStrategy waitStrategy)
+            throws InterruptedException {
+        MpmcCircularBuffer<Integer> buffer =
+            new MpmcCircularBuffer<>(capacity, waitStrategy);
+        int threads = 3;
+        int messages = 10_000;
+        AtomicLong sum = new AtomicLong();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < messages; i++) {
+                        buffer.put(i);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            workers.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < messages; i++) {
+                        sum.addAndGet(buffer.take());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return sum.get() == threads * (long) messages * (messages - 1) / 2 &&
+               buffer.size() == 0;
+    }
+
+    private static boolean testMpmcBuffer_BusySpinWaitStrategy()
+            throws InterruptedException {
+        return testMpmcBuffer_ProducersConsumers(1 << 15,
+            new BusySpinWaitStrategy());
+    }
+
+    private static boolean testMpmcBuffer_YieldingWaitStrategy()
+            throws InterruptedException {
+        return testMpmcBuffer_ProducersConsumers(8,
+            new YieldingWaitStrategy());
+    }
+
+    private static boolean testMpmcBuffer_ParkingWaitStrategy()
+            throws InterruptedException {
+        return testMpmcBuffer_ProducersConsumers(8,
+            new ParkingWaitStrategy());
+    }
+
+    private static boolean testMpmcBuffer_BlockingWaitStrategy()
+            throws InterruptedException {
+        return testMpmcBuffer_ProducersConsumers(8,
+            new BlockingWaitStrategy());
+    }
+
+    private static boolean testIntBuffer_ReadWrite() {
+        IntCircularBuffer buffer = new IntCircularBuffer(10);
+        for (int i = 0; i < 100; i++) {
+            buffer.write(i);
+        }
+
+        boolean testResult = buffer.size() == 100;
+        for (int i = 0; i < 100; i++) {
+            testResult = testResult && buffer.read() == i;
+        }
+        return testResult && buffer.size() == 0;
+    }
+
+    private static boolean testIntBuffer_Read_EmptyBuffer() {
+        IntCircularBuffer buffer = new IntCircularBuffer();
+        try {
+            buffer.read();
+        } catch (NoSuchElementException e) {
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean testIntBuffer_Iterator() {
+        IntCircularBuffer buffer = new IntCircularBuffer(10);
+        for (int i = 0; i < 100; i++) {
+            buffer.write(i);
+            buffer.write(i);
+            buffer.read();
+        }
+
+        PrimitiveIterator.OfInt iterator = buffer.iterator();
+        boolean testResult = true;
+        for (int i = 50; i < 100; i++) {
+            testResult = testResult && iterator.nextInt() == i;
+            testResult = testResult && iterator.nextInt() == i;
+        }
+        return testResult && !iterator.hasNext();
+    }
+
+    private static boolean testPrimitiveBuffers_GrowthPolicy() {
+        IntCircularBuffer ints =
+            new IntCircularBuffer(8, new HysteresisGrowthPolicy(8, 64));
+        LongCircularBuffer longs = new LongCircularBuffer(8);
+        DoubleCircularBuffer doubles = new DoubleCircularBuffer(8);
+        for (int cycle = 0; cycle < 10; cycle++) {
+            for (int i = 0; i < 64; i++) {
+                ints.write(i);
+                longs.write(i);
+                doubles.write(i);
+            }
+            for (int i = 0; i < 64; i++) {
+                ints.read();
+                longs.read();
+                doubles.read();
+            }
+        }
+        boolean testResult = ints.getResizeCount() == 3 &&
+                             longs.getResizeCount() == 3 &&
+                             doubles.getResizeCount() == 3 &&
+                             ints.getCopiedElements() == 8 + 16 + 32 &&
+                             longs.getCopiedElements() == 8 + 16 + 32 &&
+                             doubles.getCopiedElements() == 8 + 16 + 32 &&
+                             doubles.capacity() == 64;
+        for (int i = 0; i < 64; i++) {
+            ints.write(i);
+        }
+        try {
+            ints.write(64);
+        } catch (IllegalStateException e) {
+            return testResult && ints.capacity() == 64 && ints.read() == 0;
+        }
+        return false;
+    }
+
+    private static boolean testLongBuffer_ReadWrite() {
+        LongCircularBuffer buffer = new LongCircularBuffer(10);
+        for (long i = 0; i < 100; i++) {
+            buffer.write(Long.MAX_VALUE - i);
+        }
+
+        boolean testResult = buffer.size() == 100;
+        for (long i = 0; i < 100; i++) {
+            testResult = testResult && buffer.read() == Long.MAX_VALUE - i;
+        }
+        return testResult && buffer.size() == 0;
+    }
+
+    private static boolean testLongBuffer_Iterator() {
+        LongCircularBuffer buffer = new LongCircularBuffer(10);
+        for (long i = 0; i < 100; i++) {
+            buffer.write(i);
+        }
+
+        long counter = 0;
+        boolean testResult = true;
+        PrimitiveIterator.OfLong iterator = buffer.iterator();
+        while (iterator.hasNext()) {
+            testResult = testResult && iterator.nextLong() == counter++;
+        }
+        return testResult && counter == 100;
+    }
+
+    private static boolean testDoubleBuffer_ReadWrite() {
+        DoubleCircularBuffer buffer = new DoubleCircularBuffer(10);
+        for (int i = 0; i < 100; i++) {
+            buffer.write(i / 4.0);
+        }
+
+        boolean testResult = buffer.size() == 100;
+        for (int i = 0; i < 100; i++) {
+            testResult = testResult && buffer.read() == i / 4.0;
+        }
+        return testResult && buffer.size() == 0;
+    }
+
+    private static boolean testDoubleBuffer_Iterator() {
+        DoubleCircularBuffer buffer = new DoubleCircularBuffer(10);
+        for (int i = 0; i < 100; i++) {
+            buffer.write(i / 4.0);
+        }
+
+        int counter = 0;
+        boolean testResult = true;
+        PrimitiveIterator.OfDouble iterator = buffer.iterator();
+        while (iterator.hasNext()) {
+            testResult = testResult && iterator.nextDouble() == counter++ / 4.0;
+        }
+        return testResult && counter == 100;
+    }
+
+    private static boolean testPersistentBuffer_ReadWrite() throws IOException {
+        Path file = Files.createTempFile("buffer", ".dat");
+        try (PersistentCircularBuffer<Long> buffer =
+                new PersistentCircularBuffer<>(file, 4, new LongRecordCodec())) {
+            boolean testResult = true;
+            for (long i = 0; i < 100; i++) {
+                buffer.write(i);
+                buffer.write(-i);
+                testResult = testResult && buffer.size() == 2;
+                testResult = testResult && buffer.read() == i;
+                testResult = testResult && buffer.read() == -i;
+            }
+            return testResult && buffer.size() == 0;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static boolean testPersistentBuffer_FullBuffer() throws IOException {
+        Path file = Files.createTempFile("buffer", ".dat");
+        try (PersistentCircularBuffer<Long> buffer =
+                new PersistentCircularBuffer<>(file, 4, new LongRecordCodec())) {
+            for (long i = 0; i < 4; i++) {
+                buffer.write(i);
+            }
+            try {
+                buffer.write(4L);
+            } catch (IllegalStateException e) {
+                return buffer.size() == 4;
+            }
+            return false;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static boolean testPersistentBuffer_Restart() throws IOException {
+        Path file = Files.createTempFile("buffer", ".dat");
+        try {
+            try (PersistentCircularBuffer<Long> buffer =
+                    new PersistentCircularBuffer<>(file, 4, new LongRecordCodec())) {
+                for (long i = 0; i < 6; i++) {
+                    buffer.write(i);
+                    buffer.read();
+                }
+                buffer.write(6L);
+                buffer.write(7L);
+                buffer.write(8L);
+            }
+
+            try (PersistentCircularBuffer<Long> buffer =
+                    new PersistentCircularBuffer<>(file, 4, new LongRecordCodec())) {
+                long counter = 6;
+                boolean testResult = buffer.size() == 3;
+                for (Long value : buffer) {
+                    testResult = testResult && value == counter++;
+                }
+                return testResult && buffer.read() == 6 &&
+                       buffer.read() == 7 && buffer.read() == 8;
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static boolean testPersistentBuffer_ProducerConsumer()
+            throws IOException, InterruptedException {
+        Path file = Files.createTempFile("buffer", ".dat");
+        try (PersistentCircularBuffer<Long> producer =
+                 new PersistentCircularBuffer<>(file, 16,
+                                                new LongRecordCodec());
+             PersistentCircularBuffer<Long> consumer =
+                 new PersistentCircularBuffer<>(file, 16,
+                                                new LongRecordCodec())) {
+            Thread writer = new Thread(() -> {
+                for (long i = 0; i < 100_000; i++) {
+                    while (producer.size() == producer.capacity()) {
+                        Thread.onSpinWait();
+                    }
+                    producer.write(i);
+                }
+            });
+            writer.start();
+            boolean testResult = true;
+            for (long i = 0; i < 100_000; i++) {
+                while (consumer.size() == 0) {
+                    Thread.onSpinWait();
+                }
+                testResult = testResult && consumer.read() == i;
+            }
+            writer.join();
+            return testResult && consumer.size() == 0 && producer.size() == 0;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static boolean testPersistentBuffer_IncompatibleFile()
+            throws IOException {
+        Path file = Files.createTempFile("buffer", ".dat");
+        try {
+            new PersistentCircularBuffer<>(file, 4, new LongRecordCodec()).close();
+            try {
+                new PersistentCircularBuffer<>(file, 8, new LongRecordCodec());
+            } catch (IOException e) {
+                return true;
+            }
+            return false;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static boolean testBlockingBuffer_Block()
+            throws InterruptedException {
+        BlockingQueue<Integer> buffer =
+            new BlockingCircularBuffer<>(4, OverflowPolicy.BLOCK);
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 1000; i++) {
+                    buffer.put(i);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        boolean testResult = true;
+        for (int i = 0; i < 1000; i++) {
+            testResult = testResult && buffer.take() == i;
+        }
+        producer.join();
+        return testResult && buffer.isEmpty() &&
+               buffer.remainingCapacity() == 4;
+    }
+
+    private static boolean testBlockingBuffer_Block_Timeout()
+            throws InterruptedException {
+        BlockingQueue<Integer> buffer =
+            new BlockingCircularBuffer<>(2, OverflowPolicy.BLOCK);
+        buffer.put(1);
+        buffer.put(2);
+        return !buffer.offer(3) &&
+               !buffer.offer(3, 10, TimeUnit.MILLISECONDS) &&
+               buffer.poll() == 1 && buffer.poll() == 2 &&
+               buffer.poll(10, TimeUnit.MILLISECONDS) == null;
+    }
+
+    private static boolean testBlockingBuffer_DropNewest()
+            throws InterruptedException {
+        BlockingCircularBuffer<Integer> buffer =
+            new BlockingCircularBuffer<>(4, OverflowPolicy.DROP_NEWEST);
+        for (int i = 0; i < 10; i++) {
+            buffer.put(i);
+        }
+        boolean testResult = !buffer.offer(10);
+        List<Integer> values = new ArrayList<>();
+        buffer.drainTo(values);
+        return testResult && values.equals(Arrays.asList(0, 1, 2, 3)) &&
+               buffer.getDroppedCount() == 7;
+    }
+
+    private static boolean testBlockingBuffer_DropOldest()
+            throws InterruptedException {
+        BlockingCircularBuffer<Integer> buffer =
+            new BlockingCircularBuffer<>(4, OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 8; i++) {
+            buffer.put(i);
+        }
+        boolean testResult = buffer.offer(8) && buffer.offer(9);
+        List<Integer> values = new ArrayList<>();
+        buffer.drainTo(values);
+        return testResult && values.equals(Arrays.asList(6, 7, 8, 9)) &&
+               buffer.getDroppedCount() == 6;
+    }
+
+    private static boolean testBlockingBuffer_Fail()
+            throws InterruptedException {
+        BlockingCircularBuffer<Integer> buffer =
+            new BlockingCircularBuffer<>(2, OverflowPolicy.FAIL);
+        buffer.put(1);
+        buffer.add(2);
+        try {
+            buffer.put(3);
+        } catch (IllegalStateException e) {
+            return buffer.size() == 2 && buffer.peek() == 1;
+        }
+        return false;
+    }
+
+    private static boolean testBlockingBuffer_Remove()
+            throws InterruptedException {
+        BlockingCircularBuffer<Integer> buffer =
+            new BlockingCircularBuffer<>(4, OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 6; i++) {
+            buffer.put(i);
+        }
+        boolean testResult = buffer.remove(3) && !buffer.remove(0);
+        List<Integer> values = new ArrayList<>();
+        for (Integer value : buffer) {
+            values.add(value);
+        }
+        return testResult && values.equals(Arrays.asList(2, 4, 5));
+    }
+
+    private static boolean testBlockingBuffer_IteratorRemove()
+            throws InterruptedException {
+        BlockingCircularBuffer<Integer> buffer =
+            new BlockingCircularBuffer<>(8, OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 10; i++) {
+            buffer.put(i);
+        }
+        boolean testResult = buffer.removeIf(value -> value % 3 == 0) &&
+                             buffer.removeAll(Arrays.asList(4)) &&
+                             buffer.retainAll(Arrays.asList(2, 7, 8, 9));
+        java.util.Iterator<Integer> iterator = buffer.iterator();
+        buffer.put(10);
+        testResult = testResult && iterator.next() == 2;
+        iterator.remove();
+        List<Integer> values = new ArrayList<>();
+        testResult = testResult && buffer.drainTo(values, -1) == 0;
+        buffer.drainTo(values);
+        return testResult && values.equals(Arrays.asList(7, 8, 10));
+    }
+
+    private static boolean testTimeWindowedBuffer_Aggregates() {
+        AtomicLong clock = new AtomicLong();
+        TimeWindowedBuffer buffer =
+            new TimeWindowedBuffer(10, TimeUnit.NANOSECONDS, clock::get);
+        buffer.write(5.0);
+        clock.set(2);
+        buffer.write(1.0);
+        clock.set(4);
+        buffer.write(3.0);
+        clock.set(6);
+        buffer.write(9.0);
+        return buffer.count() == 4 && buffer.sum() == 18.0 &&
+               buffer.average() == 4.5 &&
+               buffer.min() == 1.0 && buffer.max() == 9.0;
+    }
+
+    private static boolean testTimeWindowedBuffer_Expiry() {
+        AtomicLong clock = new AtomicLong();
+        TimeWindowedBuffer buffer =
+            new TimeWindowedBuffer(10, TimeUnit.NANOSECONDS, clock::get);
+        buffer.write(5.0);
+        clock.set(2);
+        buffer.write(1.0);
+        clock.set(4);
+        buffer.write(3.0);
+        clock.set(6);
+        buffer.write(9.0);
+
+        clock.set(12);
+        boolean testResult = buffer.count() == 2 && buffer.sum() == 12.0 &&
+                             buffer.min() == 3.0 && buffer.max() == 9.0;
+        clock.set(16);
+        testResult = testResult && buffer.count() == 0 && buffer.sum() == 0;
+        try {
+            buffer.max();
+        } catch (NoSuchElementException e) {
+            return testResult;
+        }
+        return false;
+    }
+
+    private static boolean testTimeWindowedBuffer_BufferResize() {
+        AtomicLong clock = new AtomicLong();
+        TimeWindowedBuffer buffer =
+            new TimeWindowedBuffer(100, TimeUnit.NANOSECONDS, clock::get);
+        boolean testResult = true;
+        for (int i = 0; i < 1000; i++) {
+            clock.set(i);
+            buffer.write(i % 37);
+            testResult = testResult && buffer.count() == Math.min(i + 1, 100);
+        }
+        double sum = 0;
+        for (int i = 900; i < 1000; i++) {
+            sum += i % 37;
+        }
+        return testResult && buffer.sum() == sum &&
+               buffer.min() == 0 && buffer.max() == 36;
+    }
+
+    public static void main(String[] args)
+            throws IOException, InterruptedException {
         int counter = 0;
         if (!testSize()) {
             System.out.println("Size test failed!");
@@ -163,6 +1013,194 @@ public class Iterator {
             System.out.println("For each iterator test failed!");
             counter++;
         }
+        if (!testWriteAll_WrapAround()) {
+            System.out.println("Wrap around write all test failed!");
+            counter++;
+        }
+        if (!testWriteAll_BufferResize()) {
+            System.out.println("Buffer resize write all test failed!");
+            counter++;
+        }
+        if (!testWriteAll_OutOfBounds()) {
+            System.out.println("Out of bounds write all test failed!");
+            counter++;
+        }
+        if (!testDrainTo_Array()) {
+            System.out.println("Array drain test failed!");
+            counter++;
+        }
+        if (!testDrainTo_Consumer()) {
+            System.out.println("Consumer drain test failed!");
+            counter++;
+        }
+        if (!testDrainTo_ThrowingConsumer()) {
+            System.out.println("Drain to throwing consumer test failed!");
+            counter++;
+        }
+        if (!testSpliterator_Split()) {
+            System.out.println("Spliterator split test failed!");
+            counter++;
+        }
+        if (!testStream_Parallel()) {
+            System.out.println("Parallel stream test failed!");
+            counter++;
+        }
+        if (!testGrowthPolicy_Hysteresis()) {
+            System.out.println("Growth policy hysteresis test failed!");
+            counter++;
+        }
+        if (!testGrowthPolicy_Shrink()) {
+            System.out.println("Growth policy shrink test failed!");
+            counter++;
+        }
+        if (!testGrowthPolicy_BurstAndDrain()) {
+            System.out.println("Growth policy burst and drain test failed!");
+            counter++;
+        }
+        if (!testGrowthPolicy_MaxCapacity()) {
+            System.out.println("Growth policy max capacity test failed!");
+            counter++;
+        }
+        if (!testSpscBuffer_InvalidCapacity()) {
+            System.out.println("SPSC buffer invalid capacity test failed!");
+            counter++;
+        }
+        if (!testSpscBuffer_ReadWrite()) {
+            System.out.println("SPSC buffer read write test failed!");
+            counter++;
+        }
+        if (!testSpscBuffer_Read_EmptyBuffer()) {
+            System.out.println("SPSC buffer empty buffer read test failed!");
+            counter++;
+        }
+        if (!testSpscBuffer_Write_FullBuffer()) {
+            System.out.println("SPSC buffer full buffer write test failed!");
+            counter++;
+        }
+        if (!testSpscBuffer_ProducerConsumer()) {
+            System.out.println("SPSC buffer producer consumer test failed!");
+            counter++;
+        }
+        if (!testMpmcBuffer_ReadWrite()) {
+            System.out.println("MPMC buffer read write test failed!");
+            counter++;
+        }
+        if (!testMpmcBuffer_Read_EmptyBuffer()) {
+            System.out.println("MPMC buffer empty buffer read test failed!");
+            counter++;
+        }
+        if (!testMpmcBuffer_Write_FullBuffer()) {
+            System.out.println("MPMC buffer full buffer write test failed!");
+            counter++;
+        }
+        if (!testMpmcBuffer_BusySpinWaitStrategy()) {
+            System.out.println("MPMC buffer busy spin wait strategy test failed!");
+            counter++;
+        }
+        if (!testMpmcBuffer_YieldingWaitStrategy()) {
+            System.out.println("MPMC buffer yielding wait strategy test failed!");
+            counter++;
+        }
+        if (!testMpmcBuffer_ParkingWaitStrategy()) {
+            System.out.println("MPMC buffer parking wait strategy test failed!");
+            counter++;
+        }
+        if (!testMpmcBuffer_BlockingWaitStrategy()) {
+            System.out.println("MPMC buffer blocking wait strategy test failed!");
+            counter++;
+        }
+        if (!testIntBuffer_ReadWrite()) {
+            System.out.println("Int buffer read write test failed!");
+            counter++;
+        }
+        if (!testIntBuffer_Read_EmptyBuffer()) {
+            System.out.println("Int buffer empty buffer read test failed!");
+            counter++;
+        }
+        if (!testIntBuffer_Iterator()) {
+            System.out.println("Int buffer iterator test failed!");
+            counter++;
+        }
+        if (!testPrimitiveBuffers_GrowthPolicy()) {
+            System.out.println("Primitive buffers growth policy test failed!");
+            counter++;
+        }
+        if (!testLongBuffer_ReadWrite()) {
+            System.out.println("Long buffer read write test failed!");
+            counter++;
+        }
+        if (!testLongBuffer_Iterator()) {
+            System.out.println("Long buffer iterator test failed!");
+            counter++;
+        }
+        if (!testDoubleBuffer_ReadWrite()) {
+            System.out.println("Double buffer read write test failed!");
+            counter++;
+        }
+        if (!testDoubleBuffer_Iterator()) {
+            System.out.println("Double buffer iterator test failed!");
+            counter++;
+        }
+        if (!testPersistentBuffer_ReadWrite()) {
+            System.out.println("Persistent buffer read write test failed!");
+            counter++;
+        }
+        if (!testPersistentBuffer_FullBuffer()) {
+            System.out.println("Persistent buffer full buffer write test failed!");
+            counter++;
+        }
+        if (!testPersistentBuffer_Restart()) {
+            System.out.println("Persistent buffer restart test failed!");
+            counter++;
+        }
+        if (!testPersistentBuffer_ProducerConsumer()) {
+            System.out.println("Persistent buffer producer consumer test failed!");
+            counter++;
+        }
+        if (!testPersistentBuffer_IncompatibleFile()) {
+            System.out.println("Persistent buffer incompatible file test failed!");
+            counter++;
+        }
+        if (!testBlockingBuffer_Block()) {
+            System.out.println("Blocking buffer block policy test failed!");
+            counter++;
+        }
+        if (!testBlockingBuffer_Block_Timeout()) {
+            System.out.println("Blocking buffer timeout test failed!");
+            counter++;
+        }
+        if (!testBlockingBuffer_DropNewest()) {
+            System.out.println("Blocking buffer drop newest policy test failed!");
+            counter++;
+        }
+        if (!testBlockingBuffer_DropOldest()) {
+            System.out.println("Blocking buffer drop oldest policy test failed!");
+            counter++;
+        }
+        if (!testBlockingBuffer_Fail()) {
+            System.out.println("Blocking buffer fail policy test failed!");
+            counter++;
+        }
+        if (!testBlockingBuffer_Remove()) {
+            System.out.println("Blocking buffer remove test failed!");
+            counter++;
+        }
+        if (!testBlockingBuffer_IteratorRemove()) {
+            System.out.println("Blocking buffer iterator remove test failed!");
+            counter++;
+        }
+        if (!testTimeWindowedBuffer_Aggregates()) {
+            System.out.println("Time windowed buffer aggregates test failed!");
+            counter++;
+        }
+        if (!testTimeWindowedBuffer_Expiry()) {
+            System.out.println("Time windowed buffer expiry test failed!");
+            counter++;
+        }
+        if (!testTimeWindowedBuffer_BufferResize()) {
+            System.out.println("Time windowed buffer resize test failed!");
+            counter++;
+        }
         System.out.println(counter + " tests failed.");
     }
 }
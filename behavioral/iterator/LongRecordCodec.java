@@ -0,0 +1,19 @@
+import java.nio.ByteBuffer;
+
+public class LongRecordCodec implements RecordCodec<Long> {
+
+    @Override
+    public int recordSize() {
+        return Long.BYTES;
+    }
+
+    @Override
+    public void encode(Long value, ByteBuffer buffer, int offset) {
+        buffer.putLong(offset, value);
+    }
+
+    @Override
+    public Long decode(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset);
+    }
+}
@@ -0,0 +1,121 @@
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+
+// Lock-free bounded circular buffer for any number of writer and reader
+// threads. Every slot carries its own sequence number. A writer claims the
+// next position by advancing the tail and publishes the element by moving the
+// slot sequence forward, which is what readers wait for before claiming the
+// position from the head. Threads that need to wait for space or elements use
+// the WaitStrategy supplied at construction time.
+
+public class MpmcCircularBuffer<T> {
+
+    private final T[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final Sequence head = new Sequence(0);
+    private final Sequence tail = new Sequence(0);
+    private final WaitStrategy waitStrategy;
+    private final BooleanSupplier notEmpty = () -> size() > 0;
+    private final BooleanSupplier notFull = () -> size() < capacity();
+
+    public MpmcCircularBuffer(int capacity, WaitStrategy waitStrategy) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException(
+                "Capacity must be a power of two: " + capacity);
+        }
+        this.buffer = (T[]) new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public MpmcCircularBuffer(int capacity) {
+        this(capacity, new YieldingWaitStrategy());
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public int size() {
+        long currentHead = head.get();
+        long currentTail = tail.get();
+        return (int) Math.max(0, Math.min(currentTail - currentHead,
+                                          buffer.length));
+    }
+
+    public boolean offer(T item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer[index] = item;
+                    sequences.set(index, position + 1);
+                    waitStrategy.signalAll();
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+            position = tail.get();
+        }
+    }
+
+    public T poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    T value = buffer[index];
+                    buffer[index] = null;
+                    sequences.set(index, position + buffer.length);
+                    waitStrategy.signalAll();
+                    return value;
+                }
+            } else if (difference < 0) {
+                return null;
+            }
+            position = head.get();
+        }
+    }
+
+    public T read() {
+        T value = poll();
+        if (value == null) {
+            throw new NoSuchElementException();
+        }
+        return value;
+    }
+
+    public void write(T item) {
+        if (!offer(item)) {
+            throw new IllegalStateException("Buffer is full");
+        }
+    }
+
+    public T take() throws InterruptedException {
+        T value;
+        while ((value = poll()) == null) {
+            waitStrategy.waitFor(notEmpty);
+        }
+        return value;
+    }
+
+    public void put(T item) throws InterruptedException {
+        while (!offer(item)) {
+            waitStrategy.waitFor(notFull);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+public enum OverflowPolicy {
+
+    BLOCK,
+    DROP_NEWEST,
+    DROP_OLDEST,
+    FAIL
+}
@@ -0,0 +1,40 @@
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+public class ParkingWaitStrategy implements WaitStrategy {
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+
+    private final long parkNanos;
+
+    public ParkingWaitStrategy(long parkNanos) {
+        this.parkNanos = parkNanos;
+    }
+
+    public ParkingWaitStrategy() {
+        this(1_000);
+    }
+
+    @Override
+    public void waitFor(BooleanSupplier condition)
+            throws InterruptedException {
+        int counter = 0;
+        while (!condition.getAsBoolean()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (counter < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (counter < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(parkNanos);
+            }
+            counter++;
+        }
+    }
+
+    @Override
+    public void signalAll() {}
+}
@@ -0,0 +1,167 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Circular buffer of fixed size records stored in a memory-mapped file. The
+// first page of the file is a header holding the layout of the buffer along
+// with its read and write positions. A record is always stored before the
+// write position is advanced past it, and it is only released by moving the
+// read position after it has been decoded. A process that is restarted on
+// the same file therefore resumes exactly where the previous one stopped.
+//
+// The buffer is also a single-producer single-consumer queue between two
+// threads, or two processes, that map the same file. Neither side caches the
+// position of the other: the writer reads the read position with acquire
+// semantics before it checks for space, and publishes its write position with
+// release semantics after it has stored the record, and the reader does the
+// same the other way round. A record is therefore fully stored before the
+// reader can see it, and fully decoded before the writer can overwrite it.
+// The file must have been created before the other side maps it.
+
+public class PersistentCircularBuffer<T> implements Iterable<T>, Closeable {
+
+    private static final int HEADER_SIZE = 4096;
+    private static final int MAGIC = 0x43425546;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int RECORD_SIZE_OFFSET = 8;
+    private static final int READ_POSITION_OFFSET = 16;
+    private static final int WRITE_POSITION_OFFSET = 24;
+    private static final VarHandle INT = MethodHandles
+        .byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles
+        .byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final RecordCodec<T> codec;
+    private final int capacity;
+    private final int recordSize;
+    private volatile boolean closed = false;
+
+    public PersistentCircularBuffer(Path file, int capacity,
+                                    RecordCodec<T> codec) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        long fileSize = HEADER_SIZE + (long) capacity * codec.recordSize();
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Buffer too large: " + fileSize);
+        }
+
+        this.codec = codec;
+        this.capacity = capacity;
+        this.recordSize = codec.recordSize();
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean exists = channel.size() > 0;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+
+        if (exists) {
+            if ((int) INT.getAcquire(buffer, MAGIC_OFFSET) != MAGIC ||
+                buffer.getInt(CAPACITY_OFFSET) != capacity ||
+                buffer.getInt(RECORD_SIZE_OFFSET) != recordSize) {
+                channel.close();
+                throw new IOException("Incompatible buffer file: " + file);
+            }
+        } else {
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            buffer.putInt(RECORD_SIZE_OFFSET, recordSize);
+            buffer.putLong(READ_POSITION_OFFSET, 0);
+            buffer.putLong(WRITE_POSITION_OFFSET, 0);
+            INT.setRelease(buffer, MAGIC_OFFSET, MAGIC);
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        long start = readPosition();
+        return (int) (writePosition() - start);
+    }
+
+    public T read() {
+        ensureOpen();
+        long start = readPosition();
+        if (writePosition() <= start) {
+            throw new NoSuchElementException();
+        }
+        T value = codec.decode(buffer, offset(start));
+        LONG.setRelease(buffer, READ_POSITION_OFFSET, start + 1);
+        return value;
+    }
+
+    public void write(T item) {
+        ensureOpen();
+        long end = writePosition();
+        if (end - readPosition() >= capacity) {
+            throw new IllegalStateException("Buffer is full");
+        }
+        codec.encode(item, buffer, offset(end));
+        LONG.setRelease(buffer, WRITE_POSITION_OFFSET, end + 1);
+    }
+
+    public void force() {
+        ensureOpen();
+        buffer.force();
+    }
+
+    // Iterates over the records that have not been read yet, without
+    // releasing them. Only the reading side may iterate, as the writer
+    // could otherwise overwrite a record while it is being decoded.
+    @Override
+    public Iterator<T> iterator() {
+        ensureOpen();
+        return new Iterator<T>() {
+            private long cursor = readPosition();
+
+            public T next() {
+                if (cursor >= writePosition()) {
+                    throw new NoSuchElementException();
+                }
+                return codec.decode(buffer, offset(cursor++));
+            }
+
+            public boolean hasNext() {
+                return writePosition() - cursor > 0;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    private long readPosition() {
+        return (long) LONG.getAcquire(buffer, READ_POSITION_OFFSET);
+    }
+
+    private long writePosition() {
+        return (long) LONG.getAcquire(buffer, WRITE_POSITION_OFFSET);
+    }
+
+    private int offset(long position) {
+        return HEADER_SIZE + (int) (position % capacity) * recordSize;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Buffer is closed");
+        }
+    }
+}
@@ -0,0 +1,192 @@
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// Compares the single-threaded throughput of CircularBuffer with ArrayDeque
+// and ArrayBlockingQueue. Each workload is warmed up before it is measured,
+// and the bytes allocated by the benchmark thread are reported per operation
+// next to the throughput, so that changes which start boxing or copying on
+// the hot path show up as allocation regressions. Run with:
+//
+//     javac *.java && java QueueComparisonBenchmark
+//
+// The workloads are:
+// - readWrite: one write immediately followed by one read.
+// - burstDrain: a burst of writes followed by draining the whole burst.
+// - iteration: a for-each pass over a buffer holding a burst of elements.
+// - resize: writes into a new, minimally sized buffer until it holds a burst
+//   of elements and then reads them all back. ArrayBlockingQueue cannot grow,
+//   so it is created with the full burst capacity instead.
+
+public class QueueComparisonBenchmark {
+
+    private static final int BURST = 4096;
+    private static final int OPERATIONS = 1 << 22;
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final ThreadMXBean THREADS =
+        (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final Integer[] VALUES = new Integer[BURST];
+
+    static {
+        for (int i = 0; i < VALUES.length; i++) {
+            VALUES[i] = i;
+        }
+    }
+
+    private static volatile long sink;
+
+    private static long readWrite(Consumer<Integer> write,
+                                  Supplier<Integer> read) {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            write.accept(VALUES[i & (BURST - 1)]);
+            sum += read.get();
+        }
+        sink = sum;
+        return OPERATIONS;
+    }
+
+    private static long burstDrain(Consumer<Integer> write,
+                                   Supplier<Integer> read) {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS / BURST; i++) {
+            for (int j = 0; j < BURST; j++) {
+                write.accept(VALUES[j]);
+            }
+            for (int j = 0; j < BURST; j++) {
+                sum += read.get();
+            }
+        }
+        sink = sum;
+        return OPERATIONS;
+    }
+
+    private static long iteration(Iterable<Integer> buffer) {
+        long sum = 0;
+        for (int i = 0; i < OPERATIONS / BURST; i++) {
+            for (Integer value : buffer) {
+                sum += value;
+            }
+        }
+        sink = sum;
+        return OPERATIONS;
+    }
+
+    private static <Q> long resize(Supplier<Q> factory,
+                                   Consumer<Q> writeBurst,
+                                   Consumer<Q> readBurst) {
+        for (int i = 0; i < OPERATIONS / BURST; i++) {
+            Q buffer = factory.get();
+            writeBurst.accept(buffer);
+            readBurst.accept(buffer);
+        }
+        return OPERATIONS;
+    }
+
+    private static CircularBuffer<Integer> filledCircularBuffer() {
+        CircularBuffer<Integer> buffer = new CircularBuffer<>(BURST);
+        buffer.writeAll(VALUES, 0, BURST);
+        return buffer;
+    }
+
+    private static <Q extends Queue<Integer>> Q filledQueue(Q queue) {
+        for (Integer value : VALUES) {
+            queue.offer(value);
+        }
+        return queue;
+    }
+
+    private static void writeBurst(CircularBuffer<Integer> buffer) {
+        for (Integer value : VALUES) {
+            buffer.write(value);
+        }
+    }
+
+    private static void readBurst(CircularBuffer<Integer> buffer) {
+        long sum = 0;
+        for (int i = 0; i < BURST; i++) {
+            sum += buffer.read();
+        }
+        sink = sum;
+    }
+
+    private static void writeBurst(Queue<Integer> queue) {
+        for (Integer value : VALUES) {
+            queue.offer(value);
+        }
+    }
+
+    private static void readBurst(Queue<Integer> queue) {
+        long sum = 0;
+        for (int i = 0; i < BURST; i++) {
+            sum += queue.poll();
+        }
+        sink = sum;
+    }
+
+    private static void measure(String name, LongSupplier workload) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            workload.getAsLong();
+        }
+
+        long operations = 0;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes();
+        long begin = System.nanoTime();
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            operations += workload.getAsLong();
+        }
+        long elapsed = System.nanoTime() - begin;
+        allocated = THREADS.getCurrentThreadAllocatedBytes() - allocated;
+
+        System.out.printf("%-36s %10.2f Mops/s %10.3f B/op%n", name,
+            operations * 1000.0 / elapsed, (double) allocated / operations);
+    }
+
+    public static void main(String[] args) {
+        CircularBuffer<Integer> buffer = new CircularBuffer<>();
+        ArrayDeque<Integer> deque = new ArrayDeque<>();
+        ArrayBlockingQueue<Integer> queue = new ArrayBlockingQueue<>(BURST);
+
+        measure("readWrite CircularBuffer",
+            () -> readWrite(buffer::write, buffer::read));
+        measure("readWrite ArrayDeque",
+            () -> readWrite(deque::offer, deque::poll));
+        measure("readWrite ArrayBlockingQueue",
+            () -> readWrite(queue::offer, queue::poll));
+
+        measure("burstDrain CircularBuffer",
+            () -> burstDrain(buffer::write, buffer::read));
+        measure("burstDrain ArrayDeque",
+            () -> burstDrain(deque::offer, deque::poll));
+        measure("burstDrain ArrayBlockingQueue",
+            () -> burstDrain(queue::offer, queue::poll));
+
+        CircularBuffer<Integer> filledBuffer = filledCircularBuffer();
+        ArrayDeque<Integer> filledDeque = filledQueue(new ArrayDeque<>());
+        ArrayBlockingQueue<Integer> filledQueue =
+            filledQueue(new ArrayBlockingQueue<>(BURST));
+        measure("iteration CircularBuffer", () -> iteration(filledBuffer));
+        measure("iteration ArrayDeque", () -> iteration(filledDeque));
+        measure("iteration ArrayBlockingQueue", () -> iteration(filledQueue));
+
+        measure("resize CircularBuffer",
+            () -> resize(() -> new CircularBuffer<Integer>(),
+                         QueueComparisonBenchmark::writeBurst,
+                         QueueComparisonBenchmark::readBurst));
+        measure("resize ArrayDeque",
+            () -> resize(() -> new ArrayDeque<Integer>(8),
+                         QueueComparisonBenchmark::writeBurst,
+                         QueueComparisonBenchmark::readBurst));
+        measure("resize ArrayBlockingQueue",
+            () -> resize(() -> new ArrayBlockingQueue<Integer>(BURST),
+                         QueueComparisonBenchmark::writeBurst,
+                         QueueComparisonBenchmark::readBurst));
+    }
+}
@@ -0,0 +1,8 @@
+import java.nio.ByteBuffer;
+
+public interface RecordCodec<T> {
+
+    int recordSize();
+    void encode(T value, ByteBuffer buffer, int offset);
+    T decode(ByteBuffer buffer, int offset);
+}
@@ -0,0 +1,54 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// A counter padded on both sides so that it occupies a cache line on its own.
+// The JVM is free to reorder fields within a class but always lays out the
+// fields of a superclass before those of its subclasses, hence the hierarchy.
+
+abstract class SequenceLhsPadding {
+    protected long p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class SequenceValue extends SequenceLhsPadding {
+    protected volatile long value;
+}
+
+public class Sequence extends SequenceValue {
+
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup()
+                .findVarHandle(SequenceValue.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    protected long p11, p12, p13, p14, p15, p16, p17;
+
+    public Sequence(long initialValue) {
+        VALUE.setRelease(this, initialValue);
+    }
+
+    public long get() {
+        return value;
+    }
+
+    public long getAcquire() {
+        return (long) VALUE.getAcquire(this);
+    }
+
+    public void set(long newValue) {
+        value = newValue;
+    }
+
+    public void setRelease(long newValue) {
+        VALUE.setRelease(this, newValue);
+    }
+
+    public boolean compareAndSet(long expected, long newValue) {
+        return VALUE.compareAndSet(this, expected, newValue);
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.NoSuchElementException;
+
+// Lock-free circular buffer for exactly one writer thread and one reader
+// thread. The writer publishes an element by storing it in its slot and then
+// advancing the tail with release semantics. The reader acquires the tail
+// before reading the slot, so it never observes a partially written element.
+// The same protocol in reverse hands the slot back to the writer.
+
+public class SpscCircularBuffer<T> {
+
+    private final T[] buffer;
+    private final int mask;
+    private final Sequence head = new Sequence(0);
+    private final Sequence tail = new Sequence(0);
+
+    public SpscCircularBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException(
+                "Capacity must be a power of two: " + capacity);
+        }
+        buffer = (T[]) new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public int size() {
+        long currentHead = head.getAcquire();
+        long currentTail = tail.getAcquire();
+        return (int) Math.max(0, currentTail - currentHead);
+    }
+
+    public boolean offer(T item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        long currentTail = tail.get();
+        if (currentTail - head.getAcquire() >= buffer.length) {
+            return false;
+        }
+        buffer[(int) currentTail & mask] = item;
+        tail.setRelease(currentTail + 1);
+        return true;
+    }
+
+    public T poll() {
+        long currentHead = head.get();
+        if (currentHead >= tail.getAcquire()) {
+            return null;
+        }
+        int index = (int) currentHead & mask;
+        T value = buffer[index];
+        buffer[index] = null;
+        head.setRelease(currentHead + 1);
+        return value;
+    }
+
+    public T read() {
+        T value = poll();
+        if (value == null) {
+            throw new NoSuchElementException();
+        }
+        return value;
+    }
+
+    public void write(T item) {
+        if (!offer(item)) {
+            throw new IllegalStateException("Buffer is full");
+        }
+    }
+}
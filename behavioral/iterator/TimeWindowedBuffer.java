@@ -0,0 +1,149 @@
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Circular buffer of values that expire once they are older than a fixed
+// time window. Every write is stamped with the current time and evicts the
+// expired values from the head of the buffer, so that each value is removed
+// exactly once. The count and sum of the window are maintained on every write
+// and eviction. Minimum and maximum are kept in two monotonic queues holding
+// the positions of the values that can still become the window extreme once
+// older values expire, which makes all queries O(1) and updates amortized
+// O(1).
+
+public class TimeWindowedBuffer {
+
+    private final long windowNanos;
+    private final LongSupplier clock;
+    private long[] timestamps = new long[8];
+    private double[] values = new double[8];
+    private long[] minQueue = new long[8];
+    private long[] maxQueue = new long[8];
+    private int mask = 7;
+    private long head = 0;
+    private long tail = 0;
+    private long minHead = 0;
+    private long minTail = 0;
+    private long maxHead = 0;
+    private long maxTail = 0;
+    private double sum = 0;
+
+    public TimeWindowedBuffer(long window, TimeUnit unit, LongSupplier clock) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Invalid window: " + window);
+        }
+        this.windowNanos = unit.toNanos(window);
+        this.clock = clock;
+    }
+
+    public TimeWindowedBuffer(long window, TimeUnit unit) {
+        this(window, unit, System::nanoTime);
+    }
+
+    public void write(double value) {
+        long now = clock.getAsLong();
+        expire(now);
+        if (tail - head > mask) {
+            resize();
+        }
+
+        int index = (int) tail & mask;
+        timestamps[index] = now;
+        values[index] = value;
+        sum += value;
+
+        while (minTail > minHead &&
+               valueAt(minQueue[(int) (minTail - 1) & mask]) >= value) {
+            minTail--;
+        }
+        minQueue[(int) minTail++ & mask] = tail;
+
+        while (maxTail > maxHead &&
+               valueAt(maxQueue[(int) (maxTail - 1) & mask]) <= value) {
+            maxTail--;
+        }
+        maxQueue[(int) maxTail++ & mask] = tail;
+        tail++;
+    }
+
+    public int count() {
+        expire(clock.getAsLong());
+        return (int) (tail - head);
+    }
+
+    public double sum() {
+        expire(clock.getAsLong());
+        return sum;
+    }
+
+    public double average() {
+        expire(clock.getAsLong());
+        checkNotEmpty();
+        return sum / (tail - head);
+    }
+
+    public double min() {
+        expire(clock.getAsLong());
+        checkNotEmpty();
+        return valueAt(minQueue[(int) minHead & mask]);
+    }
+
+    public double max() {
+        expire(clock.getAsLong());
+        checkNotEmpty();
+        return valueAt(maxQueue[(int) maxHead & mask]);
+    }
+
+    private void expire(long now) {
+        while (head < tail &&
+               now - timestamps[(int) head & mask] >= windowNanos) {
+            sum -= valueAt(head);
+            if (minQueue[(int) minHead & mask] == head) {
+                minHead++;
+            }
+            if (maxQueue[(int) maxHead & mask] == head) {
+                maxHead++;
+            }
+            head++;
+        }
+        if (head == tail) {
+            sum = 0;
+        }
+    }
+
+    private void resize() {
+        int capacity = (mask + 1) * 2;
+        int newMask = capacity - 1;
+        long[] newTimestamps = new long[capacity];
+        double[] newValues = new double[capacity];
+        long[] newMinQueue = new long[capacity];
+        long[] newMaxQueue = new long[capacity];
+
+        for (long i = head; i < tail; i++) {
+            newTimestamps[(int) i & newMask] = timestamps[(int) i & mask];
+            newValues[(int) i & newMask] = values[(int) i & mask];
+        }
+        for (long i = minHead; i < minTail; i++) {
+            newMinQueue[(int) i & newMask] = minQueue[(int) i & mask];
+        }
+        for (long i = maxHead; i < maxTail; i++) {
+            newMaxQueue[(int) i & newMask] = maxQueue[(int) i & mask];
+        }
+
+        timestamps = newTimestamps;
+        values = newValues;
+        minQueue = newMinQueue;
+        maxQueue = newMaxQueue;
+        mask = newMask;
+    }
+
+    private double valueAt(long position) {
+        return values[(int) position & mask];
+    }
+
+    private void checkNotEmpty() {
+        if (head == tail) {
+            throw new NoSuchElementException();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+import java.util.function.BooleanSupplier;
+
+public interface WaitStrategy {
+
+    void waitFor(BooleanSupplier condition) throws InterruptedException;
+    void signalAll();
+}
@@ -0,0 +1,25 @@
+import java.util.function.BooleanSupplier;
+
+public class YieldingWaitStrategy implements WaitStrategy {
+
+    private static final int SPIN_TRIES = 100;
+
+    @Override
+    public void waitFor(BooleanSupplier condition)
+            throws InterruptedException {
+        int counter = 0;
+        while (!condition.getAsBoolean()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (counter++ < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    @Override
+    public void signalAll() {}
+}
@@ -0,0 +1,200 @@
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Delivers events to its observer on a dedicated worker thread, through a
+// bounded FIFO queue. Events reach the observer in the order they were
+// published, and therefore in order for each stock. What happens to an event
+// that arrives while the queue is full depends on the overflow policy:
+//
+// - DROP_NEWEST: the event is discarded.
+// - DROP_OLDEST: the oldest queued event is discarded to make room for it.
+// - BLOCK: the publisher waits for room. This holds back the publisher, and
+//   with it every other observer of the stream, for as long as this observer
+//   is behind, so it is only meant for observers that must not miss events.
+//
+// Discarded events are counted by getDroppedCount(). Conflation is not done
+// here but by a ConflatingSubscription.
+//
+// An exception thrown by the observer is passed to the uncaught exception
+// handler of the worker, which then carries on with the next event. While
+// blocked, the publisher checks every few milliseconds whether the
+// subscription has been closed or its worker has died, in which case the
+// event is dropped instead of waiting for a worker that will never take it.
+// Closing lets the worker deliver the events queued so far before it stops.
+//
+// While statistics are enabled, the time at which each event was queued is
+// kept next to it in the queue. Events queued while statistics were disabled
+// have no time, and therefore no lag.
+
+class AsyncSubscription extends Subscription {
+
+    private static final long RETRY_MILLIS = 10;
+
+    private final OverflowPolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final StockPriceEvent[] events;
+    private final long[] publishTimes;
+    private final Thread worker;
+    private int head = 0;
+    private int count = 0;
+    private long droppedCount = 0;
+    private boolean closed = false;
+
+    AsyncSubscription(StockPriceObserver observer, int queueCapacity,
+                      OverflowPolicy policy, ThreadFactory threadFactory) {
+        super(observer);
+        if (policy == OverflowPolicy.CONFLATE) {
+            throw new IllegalArgumentException(
+                "Unsupported overflow policy: " + policy);
+        }
+        this.policy = policy;
+        this.events = new StockPriceEvent[queueCapacity];
+        this.publishTimes = new long[queueCapacity];
+        this.worker = threadFactory.newThread(() -> {
+            try {
+                while (true) {
+                    StockPriceEvent event;
+                    long publishTime;
+                    lock.lock();
+                    try {
+                        while (count == 0 && !closed) {
+                            notEmpty.await();
+                        }
+                        if (count == 0) {
+                            break;
+                        }
+                        event = events[head];
+                        publishTime = publishTimes[head];
+                        events[head] = null;
+                        head = (head + 1) % events.length;
+                        count--;
+                        notFull.signal();
+                    } finally {
+                        lock.unlock();
+                    }
+                    deliver(observer, event, publishTime);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        this.worker.start();
+    }
+
+    @Override
+    int getQueueDepth() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    long getDroppedCount() {
+        lock.lock();
+        try {
+            return droppedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    void publish(StockPriceEvent event) {
+        enqueue(event);
+    }
+
+    // Queues the event and returns true, or returns false if the event was
+    // dropped, the subscription has been closed, its worker has died or the
+    // publisher was interrupted while blocked.
+    boolean enqueue(StockPriceEvent event) {
+        StockPriceEvent retained = event.retain();
+        long publishTime = getStatistics() == null ? 0 : System.nanoTime();
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            if (count == events.length) {
+                switch (policy) {
+                    case DROP_NEWEST:
+                        droppedCount++;
+                        return false;
+                    case DROP_OLDEST:
+                        events[head] = null;
+                        head = (head + 1) % events.length;
+                        count--;
+                        droppedCount++;
+                        break;
+                    default:
+                        while (count == events.length) {
+                            if (closed || !worker.isAlive()) {
+                                return false;
+                            }
+                            notFull.await(RETRY_MILLIS, TimeUnit.MILLISECONDS);
+                        }
+                }
+            }
+            int tail = (head + count) % events.length;
+            events[tail] = retained;
+            publishTimes[tail] = publishTime;
+            count++;
+            notEmpty.signal();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isAlive() {
+        return worker.isAlive();
+    }
+
+    @Override
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (Thread.currentThread() != worker) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        super.close();
+    }
+
+    private void deliver(StockPriceObserver observer, StockPriceEvent event,
+                         long publishTime) {
+        ObserverStatistics statistics = getStatistics();
+        try {
+            if (statistics == null) {
+                observer.update(event);
+                return;
+            }
+            long start = System.nanoTime();
+            observer.update(event);
+            statistics.recordUpdate(start, System.nanoTime());
+            if (publishTime != 0) {
+                statistics.recordLag(start - publishTime);
+            }
+        } catch (RuntimeException e) {
+            reportFailure(e);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Decodes fixed-layout binary ticks and publishes them to a stream without
+// allocating. Each record is 32 bytes long:
+//
+// - bytes 0-15: stock code in ASCII, padded with zero bytes.
+// - bytes 16-23: price as a big-endian double.
+// - bytes 24-31: quantity as a big-endian long.
+//
+// The stock code field is read as two longs, which are looked up in an open
+// addressing table of the codes seen so far. Only the first tick of a new
+// stock creates a String, which is then interned by the SymbolDictionary.
+// Every tick is published through the reusable event of the stream, which
+// the stream overwrites with the next tick. Observers of a synchronous stream
+// must therefore not keep a reference to the event itself after they return;
+// asynchronous and conflating subscriptions take a copy.
+
+public class BinaryTickDecoder {
+
+    public static final int RECORD_SIZE = 32;
+    public static final int STOCK_CODE_SIZE = 16;
+    private static final int PRICE_OFFSET = 16;
+    private static final int QUANTITY_OFFSET = 24;
+
+    private final SymbolDictionary dictionary = SymbolDictionary.getInstance();
+    private final StockPriceStream stream;
+    private final ByteBuffer buffer =
+        ByteBuffer.allocateDirect(RECORD_SIZE * 1024);
+    private long[] firstCodeWords = new long[64];
+    private long[] secondCodeWords = new long[64];
+    private int[] symbolIds = newSymbolIds(64);
+    private int symbolCount = 0;
+
+    public BinaryTickDecoder(StockPriceStream stream) {
+        this.stream = stream;
+    }
+
+    public static void encode(String stockCode, double stockPrice,
+                              long quantity, ByteBuffer buffer) {
+        byte[] bytes = stockCode.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length == 0 || bytes.length > STOCK_CODE_SIZE) {
+            throw new IllegalArgumentException(
+                "Invalid stock code: " + stockCode);
+        }
+        buffer.put(bytes);
+        for (int i = bytes.length; i < STOCK_CODE_SIZE; i++) {
+            buffer.put((byte) 0);
+        }
+        buffer.putDouble(stockPrice);
+        buffer.putLong(quantity);
+    }
+
+    // Publishes every complete record between the position and the limit of
+    // the buffer, leaving the position at the start of any incomplete record.
+    public int decode(ByteBuffer buffer) {
+        int count = 0;
+        while (buffer.remaining() >= RECORD_SIZE) {
+            int position = buffer.position();
+            int symbolId = symbolId(buffer, position);
+            double stockPrice = buffer.getDouble(position + PRICE_OFFSET);
+            long quantity = buffer.getLong(position + QUANTITY_OFFSET);
+            buffer.position(position + RECORD_SIZE);
+            stream.publish(dictionary.getStockCode(symbolId), symbolId,
+                           stockPrice, quantity);
+            count++;
+        }
+        return count;
+    }
+
+    // Publishes every record read from the channel until it reaches the end
+    // of the stream.
+    public long decode(ReadableByteChannel channel) throws IOException {
+        long count = 0;
+        buffer.clear();
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            count += decode(buffer);
+            buffer.compact();
+        }
+        if (buffer.position() > 0) {
+            throw new EOFException("Incomplete tick record");
+        }
+        return count;
+    }
+
+    private int symbolId(ByteBuffer buffer, int position) {
+        long first = buffer.getLong(position);
+        long second = buffer.getLong(position + 8);
+        int mask = symbolIds.length - 1;
+        int slot = hash(first, second) & mask;
+        while (symbolIds[slot] >= 0) {
+            if (firstCodeWords[slot] == first &&
+                secondCodeWords[slot] == second) {
+                return symbolIds[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return register(first, second, stockCode(buffer, position));
+    }
+
+    private int register(long first, long second, String stockCode) {
+        if (2 * (symbolCount + 1) > symbolIds.length) {
+            rehash(symbolIds.length * 2);
+        }
+        int symbolId = dictionary.intern(stockCode);
+        int mask = symbolIds.length - 1;
+        int slot = hash(first, second) & mask;
+        while (symbolIds[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        firstCodeWords[slot] = first;
+        secondCodeWords[slot] = second;
+        symbolIds[slot] = symbolId;
+        symbolCount++;
+        return symbolId;
+    }
+
+    private void rehash(int capacity) {
+        long[] firsts = firstCodeWords;
+        long[] seconds = secondCodeWords;
+        int[] ids = symbolIds;
+        firstCodeWords = new long[capacity];
+        secondCodeWords = new long[capacity];
+        symbolIds = newSymbolIds(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] >= 0) {
+                int slot = hash(firsts[i], seconds[i]) & mask;
+                while (symbolIds[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                firstCodeWords[slot] = firsts[i];
+                secondCodeWords[slot] = seconds[i];
+                symbolIds[slot] = ids[i];
+            }
+        }
+    }
+
+    private static String stockCode(ByteBuffer buffer, int position) {
+        byte[] bytes = new byte[STOCK_CODE_SIZE];
+        int length = 0;
+        while (length < STOCK_CODE_SIZE &&
+               buffer.get(position + length) != 0) {
+            bytes[length] = buffer.get(position + length);
+            length++;
+        }
+        return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    private static int hash(long first, long second) {
+        long hash = (first * 0x9E3779B97F4A7C15L) ^ second;
+        hash *= 0xC2B2AE3D27D4EB4FL;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static int[] newSymbolIds(int capacity) {
+        int[] symbolIds = new int[capacity];
+        Arrays.fill(symbolIds, -1);
+        return symbolIds;
+    }
+}
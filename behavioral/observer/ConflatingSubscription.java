@@ -0,0 +1,159 @@
+import java.util.Arrays;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Keeps only the latest pending event for each stock code. The publisher
+// replaces any event that the observer has not consumed yet, so it never
+// waits and the backlog is bounded by the number of stock codes. The pending
+// events are kept in an array indexed by symbol id, together with the symbol
+// ids in the order in which each stock first became pending, so conflating
+// an event neither hashes nor boxes. The worker thread swaps the pending
+// events with an empty batch and delivers them in that order. The lag of a
+// batch is measured from the time its first event became pending. An
+// exception thrown by the observer is reported and the worker carries on
+// with the next event.
+
+class ConflatingSubscription extends Subscription {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Thread worker;
+    private StockPriceEvent[] pending = new StockPriceEvent[64];
+    private int[] pendingIds = new int[64];
+    private int pendingCount = 0;
+    private StockPriceEvent[] draining = new StockPriceEvent[64];
+    private int[] drainingIds = new int[64];
+    private int drainingCount = 0;
+    private long pendingSince;
+    private long drainingSince;
+    private long droppedCount = 0;
+    private boolean closed = false;
+
+    ConflatingSubscription(StockPriceObserver observer,
+                           ThreadFactory threadFactory) {
+        super(observer);
+        this.worker = threadFactory.newThread(() -> {
+            try {
+                while (drain()) {
+                    for (int i = 0; i < drainingCount; i++) {
+                        StockPriceEvent event = draining[drainingIds[i]];
+                        draining[drainingIds[i]] = null;
+                        deliver(observer, event);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        this.worker.start();
+    }
+
+    @Override
+    int getQueueDepth() {
+        lock.lock();
+        try {
+            return pendingCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    long getDroppedCount() {
+        lock.lock();
+        try {
+            return droppedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    void publish(StockPriceEvent event) {
+        lock.lock();
+        try {
+            if (pendingCount == 0) {
+                pendingSince = getStatistics() == null ? 0 : System.nanoTime();
+            }
+            int symbolId = event.getSymbolId();
+            if (symbolId >= pending.length) {
+                pending = Arrays.copyOf(pending,
+                    Math.max(symbolId + 1, pending.length * 2));
+            }
+            if (pending[symbolId] == null) {
+                if (pendingCount == pendingIds.length) {
+                    pendingIds = Arrays.copyOf(pendingIds, pendingCount * 2);
+                }
+                pendingIds[pendingCount++] = symbolId;
+            } else {
+                droppedCount++;
+            }
+            pending[symbolId] = event.retain();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (Thread.currentThread() != worker) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        super.close();
+    }
+
+    private void deliver(StockPriceObserver observer, StockPriceEvent event) {
+        ObserverStatistics statistics = getStatistics();
+        try {
+            if (statistics == null) {
+                observer.update(event);
+                return;
+            }
+            long start = System.nanoTime();
+            observer.update(event);
+            statistics.recordUpdate(start, System.nanoTime());
+            if (drainingSince != 0) {
+                statistics.recordLag(start - drainingSince);
+            }
+        } catch (RuntimeException e) {
+            reportFailure(e);
+        }
+    }
+
+    private boolean drain() throws InterruptedException {
+        lock.lock();
+        try {
+            while (pendingCount == 0 && !closed) {
+                notEmpty.await();
+            }
+            if (pendingCount == 0) {
+                return false;
+            }
+            StockPriceEvent[] events = pending;
+            pending = draining;
+            draining = events;
+            int[] symbolIds = pendingIds;
+            pendingIds = drainingIds;
+            drainingIds = symbolIds;
+            drainingCount = pendingCount;
+            pendingCount = 0;
+            drainingSince = pendingSince;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+import java.util.Map;
+
+public class ExponentialMovingAveragePriceObserver
+        implements StockPriceObserver {
+
+    private final SymbolPriceTable averagePrices = new SymbolPriceTable();
+    private final double alpha;
+
+    public ExponentialMovingAveragePriceObserver(StockPriceStream stream,
+                                                 double alpha) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("Invalid alpha: " + alpha);
+        }
+        this.alpha = alpha;
+        stream.addObserver(this);
+    }
+
+    public void update(StockPriceEvent event) {
+        double average = averagePrices.get(event.getSymbolId());
+        averagePrices.set(event.getSymbolId(), Double.isNaN(average) ?
+            event.getStockPrice() :
+            alpha * event.getStockPrice() + (1 - alpha) * average);
+    }
+
+    public Double getAveragePrice(String stockCode) {
+        return averagePrices.get(stockCode);
+    }
+
+    public Map<String, Double> getAveragePrices() {
+        return averagePrices.snapshot();
+    }
+}
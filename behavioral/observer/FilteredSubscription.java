@@ -0,0 +1,90 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Limits a subscription to a set of stock codes. A stock code containing '*'
+// is a wildcard that matches any sequence of characters in its place, so
+// "*.L" matches every stock listed in London and "*" matches all stocks. The
+// stream only consults the filter when it builds its index of subscribers
+// for a stock, so events reaching this subscription are already known to
+// match.
+
+class FilteredSubscription extends Subscription {
+
+    private final Subscription subscription;
+    private final Set<String> stockCodes = new HashSet<>();
+    private final List<Pattern> patterns = new ArrayList<>();
+
+    FilteredSubscription(Subscription subscription, Set<String> stockCodes) {
+        super(subscription.getObserver());
+        this.subscription = subscription;
+        for (String stockCode : stockCodes) {
+            if (stockCode.indexOf('*') < 0) {
+                this.stockCodes.add(stockCode);
+            } else {
+                patterns.add(compile(stockCode));
+            }
+        }
+    }
+
+    boolean matches(String stockCode) {
+        if (stockCodes.contains(stockCode)) {
+            return true;
+        }
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(stockCode).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    ObserverStatistics getStatistics() {
+        return subscription.getStatistics();
+    }
+
+    @Override
+    void enableStatistics(String observerName) {
+        subscription.enableStatistics(observerName);
+    }
+
+    @Override
+    void disableStatistics() {
+        subscription.disableStatistics();
+    }
+
+    @Override
+    int getQueueDepth() {
+        return subscription.getQueueDepth();
+    }
+
+    @Override
+    long getDroppedCount() {
+        return subscription.getDroppedCount();
+    }
+
+    @Override
+    void publish(StockPriceEvent event) {
+        subscription.publish(event);
+    }
+
+    @Override
+    void close() {
+        subscription.close();
+    }
+
+    private static Pattern compile(String wildcard) {
+        StringBuilder regex = new StringBuilder();
+        String[] parts = wildcard.split("\\*", -1);
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(parts[i]));
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
@@ -0,0 +1,233 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Connects one Flow.Subscriber to a StockPriceStream. The subscription is
+// registered on the stream as an observer and buffers the events it receives
+// up to a fixed capacity, handling any excess according to its overflow
+// policy. Events are only passed on to the subscriber as far as it has
+// requested them, by a task running on the executor. The task is scheduled
+// whenever events or demand arrive, and a counter of pending signals makes
+// sure that only one task delivers at any time, so the subscriber is always
+// called serially. Once the subscription is cancelled, completed or failed,
+// it removes itself from the stream and from its publisher.
+//
+// Conflated events are kept in an array indexed by symbol id, together with
+// a queue of the symbol ids in the order in which they were first conflated,
+// so that conflating an event neither hashes nor boxes.
+
+class FlowSubscription implements Flow.Subscription, StockPriceObserver,
+                                  Runnable {
+
+    private final Flow.Subscriber<? super StockPriceEvent> subscriber;
+    private final StockPricePublisher publisher;
+    private final Executor executor;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Queue<StockPriceEvent> buffer = new ArrayDeque<>();
+    private StockPriceEvent[] conflated = new StockPriceEvent[64];
+    private int[] conflatedIds = new int[64];
+    private int conflatedHead = 0;
+    private int conflatedCount = 0;
+    private final AtomicInteger signals = new AtomicInteger();
+    private long demand = 0;
+    private long droppedCount = 0;
+    private boolean subscribed = false;
+    private boolean completed = false;
+    private boolean cancelled = false;
+    private Throwable error;
+
+    FlowSubscription(Flow.Subscriber<? super StockPriceEvent> subscriber,
+                     StockPricePublisher publisher, Executor executor,
+                     int capacity, OverflowPolicy policy) {
+        this.subscriber = subscriber;
+        this.publisher = publisher;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    long getDroppedCount() {
+        lock.lock();
+        try {
+            return droppedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void update(StockPriceEvent event) {
+        lock.lock();
+        try {
+            if (cancelled || completed) {
+                return;
+            }
+            if (conflatedCount == 0 && buffer.size() < capacity) {
+                buffer.add(event.retain());
+            } else if (policy == OverflowPolicy.CONFLATE) {
+                conflate(event);
+            } else if (policy == OverflowPolicy.DROP_OLDEST) {
+                buffer.poll();
+                buffer.add(event.retain());
+                droppedCount++;
+            } else {
+                droppedCount++;
+            }
+        } finally {
+            lock.unlock();
+        }
+        signal();
+    }
+
+    @Override
+    public void request(long n) {
+        lock.lock();
+        try {
+            if (n <= 0) {
+                error = new IllegalArgumentException(
+                    "Non-positive request: " + n);
+            } else {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+        } finally {
+            lock.unlock();
+        }
+        signal();
+    }
+
+    @Override
+    public void cancel() {
+        lock.lock();
+        try {
+            cancelled = true;
+            buffer.clear();
+            Arrays.fill(conflated, null);
+            conflatedHead = 0;
+            conflatedCount = 0;
+        } finally {
+            lock.unlock();
+        }
+        publisher.remove(this);
+    }
+
+    void complete() {
+        lock.lock();
+        try {
+            completed = true;
+        } finally {
+            lock.unlock();
+        }
+        signal();
+    }
+
+    void signal() {
+        if (signals.getAndIncrement() == 0) {
+            executor.execute(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        int missed = 1;
+        do {
+            deliver();
+            missed = signals.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void deliver() {
+        if (!subscribed) {
+            subscribed = true;
+            subscriber.onSubscribe(this);
+        }
+        while (true) {
+            StockPriceEvent event;
+            Throwable failure = null;
+            boolean finished = false;
+            lock.lock();
+            try {
+                if (cancelled) {
+                    return;
+                }
+                if (error != null) {
+                    failure = error;
+                    event = null;
+                } else {
+                    event = demand > 0 ? next() : null;
+                    if (event != null) {
+                        demand--;
+                    } else if (completed && buffer.isEmpty() &&
+                               conflatedCount == 0) {
+                        finished = true;
+                    }
+                }
+                if (failure != null || finished) {
+                    cancelled = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (failure != null) {
+                publisher.remove(this);
+                subscriber.onError(failure);
+                return;
+            }
+            if (finished) {
+                publisher.remove(this);
+                subscriber.onComplete();
+                return;
+            }
+            if (event == null) {
+                return;
+            }
+            try {
+                subscriber.onNext(event);
+            } catch (Throwable e) {
+                cancel();
+                subscriber.onError(e);
+                return;
+            }
+        }
+    }
+
+    private void conflate(StockPriceEvent event) {
+        int symbolId = event.getSymbolId();
+        if (symbolId >= conflated.length) {
+            conflated = Arrays.copyOf(conflated,
+                Math.max(symbolId + 1, conflated.length * 2));
+        }
+        if (conflated[symbolId] == null) {
+            if (conflatedHead + conflatedCount == conflatedIds.length) {
+                if (conflatedHead >= conflatedCount) {
+                    System.arraycopy(conflatedIds, conflatedHead,
+                                     conflatedIds, 0, conflatedCount);
+                    conflatedHead = 0;
+                } else {
+                    conflatedIds = Arrays.copyOf(conflatedIds,
+                                                 conflatedIds.length * 2);
+                }
+            }
+            conflatedIds[conflatedHead + conflatedCount++] = symbolId;
+        }
+        conflated[symbolId] = event.retain();
+    }
+
+    private StockPriceEvent next() {
+        StockPriceEvent event = buffer.poll();
+        if (event == null && conflatedCount > 0) {
+            int symbolId = conflatedIds[conflatedHead++];
+            if (--conflatedCount == 0) {
+                conflatedHead = 0;
+            }
+            event = conflated[symbolId];
+            conflated[symbolId] = null;
+        }
+        return event;
+    }
+}
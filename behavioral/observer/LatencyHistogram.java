@@ -0,0 +1,74 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Counts durations in nanoseconds in buckets of exponentially growing width.
+// Durations below 16ns have a bucket each; above that every power of two is
+// split into eight buckets, so a percentile is reported at most 12.5% above
+// the actual duration. Recording a duration takes a few shifts and a single
+// counter update. The histogram expects a single thread to record at any
+// time, and can be read from any thread.
+
+public class LatencyHistogram {
+
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts =
+        new AtomicLongArray(bucket(Long.MAX_VALUE) + 1);
+
+    public void record(long nanos) {
+        int bucket = bucket(Math.max(0, nanos));
+        counts.lazySet(bucket, counts.get(bucket) + 1);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    // Returns the upper bound of the bucket holding the given percentile, or
+    // 0 if nothing has been recorded.
+    public long getPercentile(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException(
+                "Invalid percentile: " + percentile);
+        }
+        long[] snapshot = new long[counts.length()];
+        long count = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        long rank = (long) Math.ceil(percentile / 100 * count);
+        for (int i = 0; i < snapshot.length; i++) {
+            rank -= snapshot[i];
+            if (rank <= 0 && snapshot[i] > 0) {
+                return upperBound(i);
+            }
+        }
+        return 0;
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < LINEAR_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) &
+                        (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (SUB_BUCKETS + subBucket) * width + width - 1;
+    }
+}
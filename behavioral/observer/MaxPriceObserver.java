@@ -1,26 +1,30 @@
-import java.util.HashMap;
 import java.util.Map;
 
 public class MaxPriceObserver implements StockPriceObserver {
 
-    private final Map<String, Double> maxPrices = new HashMap<>();
-    private final StockPriceStream stream;
+    private final SymbolPriceTable maxPrices = new SymbolPriceTable();
 
     public MaxPriceObserver(StockPriceStream stream) {
-        this.stream = stream;
         stream.addObserver(this);
     }
 
-    public void update() {
-        StockPriceEvent event = stream.getEvent();
-        Double price = maxPrices.get(event.getStockCode());
-        if (price == null || price < event.getStockPrice()) {
-            maxPrices.put(event.getStockCode(), event.getStockPrice());
+    public void update(StockPriceEvent event) {
+        double price = maxPrices.get(event.getSymbolId());
+        if (Double.isNaN(price) || price < event.getStockPrice()) {
+            maxPrices.set(event.getSymbolId(), event.getStockPrice());
         }
     }
 
+    public void merge(MaxPriceObserver other) {
+        maxPrices.merge(other.maxPrices, Math::max);
+    }
+
     public Double getMaxPrice(String stockCode) {
         return maxPrices.get(stockCode);
     }
+
+    public Map<String, Double> getMaxPrices() {
+        return maxPrices.snapshot();
+    }
 }
 
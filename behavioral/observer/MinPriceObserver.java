@@ -1,26 +1,30 @@
-import java.util.HashMap;
 import java.util.Map;
 
 public class MinPriceObserver implements StockPriceObserver {
 
-    private final Map<String, Double> minPrices = new HashMap<>();
-    private final StockPriceStream stream;
+    private final SymbolPriceTable minPrices = new SymbolPriceTable();
 
     public MinPriceObserver(StockPriceStream stream) {
-        this.stream = stream;
         stream.addObserver(this);
     }
 
-    public void update() {
-        StockPriceEvent event = stream.getEvent();
-        Double price = minPrices.get(event.getStockCode());
-        if (price == null || price > event.getStockPrice()) {
-            minPrices.put(event.getStockCode(), event.getStockPrice());
+    public void update(StockPriceEvent event) {
+        double price = minPrices.get(event.getSymbolId());
+        if (Double.isNaN(price) || price > event.getStockPrice()) {
+            minPrices.set(event.getSymbolId(), event.getStockPrice());
         }
     }
 
+    public void merge(MinPriceObserver other) {
+        minPrices.merge(other.minPrices, Math::min);
+    }
+
     public Double getMinPrice(String stockCode) {
         return minPrices.get(stockCode);
     }
+
+    public Map<String, Double> getMinPrices() {
+        return minPrices.snapshot();
+    }
 }
 
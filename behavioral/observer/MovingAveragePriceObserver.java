@@ -1,22 +1,18 @@
-import java.util.HashMap;
 import java.util.Map;
 
 public class MovingAveragePriceObserver implements StockPriceObserver {
 
-    private final Map<String, Double> averagePrices = new HashMap<>();
-    private final StockPriceStream stream;
+    private final SymbolPriceTable averagePrices = new SymbolPriceTable();
     private final int size;
 
     public MovingAveragePriceObserver(StockPriceStream stream, int size) {
-        this.stream = stream;
         this.size = size;
         stream.addObserver(this);
     }
 
-    public void update() {
-        StockPriceEvent event = stream.getEvent();
-        Double average = averagePrices.get(event.getStockCode());
-        averagePrices.put(event.getStockCode(), average == null ?
+    public void update(StockPriceEvent event) {
+        double average = averagePrices.get(event.getSymbolId());
+        averagePrices.set(event.getSymbolId(), Double.isNaN(average) ?
             event.getStockPrice() :
             (average * (size - 1) + event.getStockPrice()) / size);
     }
@@ -24,5 +20,9 @@ public class MovingAveragePriceObserver implements StockPriceObserver {
     public Double getAveragePrice(String stockCode) {
         return averagePrices.get(stockCode);
     }
+
+    public Map<String, Double> getAveragePrices() {
+        return averagePrices.snapshot();
+    }
 }
 
@@ -1,3 +1,32 @@
+import com.sun.management.ThreadMXBean;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
 // The observer pattern is a behavioral software design pattern that defines a
 // one-to-many dependency between objects so that when the state of one object
 // changes (Subject), all its dependents (Observers) are notified and updated
@@ -7,10 +36,10 @@
 //
 // The Subject holds the data model and delegates "view" functionality to
 // decoupled Observer objects. Observers register themselves with the Subject
-// upon instantiation. Whenever the Subject's state changes, it broadcasts that
-// it has changed to all registered Observers and each Observer queries the
-// Subject for the subset of the state that is responsible for monitoring. This
-// allows the type and number of Observers to be configured dynamically.
+// upon instantiation. Whenever the Subject's state changes, it pushes the
+// change to all registered Observers by calling update(StockPriceEvent), and
+// each Observer picks the part of the event it is responsible for monitoring.
+// This allows the type and number of Observers to be configured dynamically.
 //
 // Advantages:
 // - Loose coupling between Subject and Observers.
@@ -18,7 +47,8 @@
 //
 // Disadvantages:
 // - May cause memory leaks if Subject maintains hard references to Observers.
-//   (Lapsed Listener Problem).
+//   (Lapsed Listener Problem). Here observers can opt into weak registration
+//   with addWeakObserver() to avoid it.
 // - Often hard to find what part of the state changed and triggered an update.
 //
 // Examples: Observer, EventListener
@@ -26,6 +56,11 @@
 // In the example below, the StockPriceStream is the Subject that holds the
 // most recent StockPriceEvent. Once a new StockPriceEvent is published, the
 // StockPriceStream modifies its state and notifies all StockPriceObservers.
+// The event is pushed to the observers as an argument of update(), instead of
+// each observer querying the stream for it. This way an observer always sees
+// the event it is being notified about, even if the stream has moved on to
+// the next one. Observers can be added or removed while an event is being
+// published, in which case they take effect from the next event onwards.
 // The following three StockPriceObservers have been created, that receive
 // and handle StockPriceEvents.
 //
@@ -33,12 +68,94 @@
 // 2) MinPriceObserver: Calculates minimum price for each stock.
 // 3) MovingAveragePriceObserver: Calculates the moving average for each stock.
 //
+// Every StockPriceEvent carries a dense symbol id, assigned once per stock code
+// by the SymbolDictionary when the event is created. The observers keep their
+// per-stock state in SymbolPriceTables, arrays indexed by that id, so
+// handling an update needs neither hashing nor allocation. The prices are
+// written with release and read with acquire semantics through a VarHandle,
+// so the tables can be queried from other threads without a lock.
+//
 // One of the most common performance problems when implementing the Observer
 // pattern is that a subject changes its state too often for the observers to
 // keep up. This can happen in this case when we have for example too many
 // price updates per second. In such situations it might make sense to send the
 // updates to the observers in batches or introduce a form of throttling where
 // only one in ten updates is being transmitted.
+//
+// Another option is to stop observers from holding each other back. When a
+// StockPriceStream is created with a queue capacity and a ThreadFactory, each
+// observer gets its own bounded queue and worker thread. Publishing an event
+// then only enqueues it, while every observer consumes its queue in order at
+// its own pace. When the queue of an observer is full, its OverflowPolicy
+// drops the newest or the oldest event, so a stalled observer never holds
+// back the publisher or the other observers. Observers that must not miss an
+// event can opt into BLOCK, which makes the publisher wait for them instead.
+//
+// Observers that only care about the latest prices can be registered with
+// addConflatingObserver(). Instead of a queue, they get the most recent event
+// for each stock code that arrived since they last caught up. A slow observer
+// then sees the freshest prices instead of a growing backlog, while the other
+// observers of the same stream keep receiving every update.
+//
+// Observers that are only interested in some stocks can be registered with a
+// set of stock codes, which may include wildcards such as "*.L". The stream
+// indexes its observers by stock, so publishing an event only reaches the
+// observers of that stock instead of every observer filtering for itself.
+//
+// A StockPriceJournal can be registered on a stream to record its events in
+// memory-mapped files. The journal can replay them, from an offset or from a
+// point in time, into an observer that joins a running stream or that has to
+// rebuild its state after a restart.
+//
+// Feeds that deliver ticks as fixed-layout binary records can be published
+// with a BinaryTickDecoder. It reads the records from a ByteBuffer or a
+// channel and passes every tick to the observers through one reusable event
+// of the stream, so decoding and dispatching the ticks does not allocate.
+//
+// A StockPricePublisher exposes a stream as a java.util.concurrent.Flow
+// publisher. Each subscriber only receives as many events as it requested,
+// while the events it has not requested yet wait in a bounded buffer. When
+// the buffer is full, the further events are either conflated by stock or
+// dropped, depending on the OverflowPolicy.
+//
+// A stream can keep ObserverStatistics for each of its observers: the number
+// of update() calls, their total and percentile latency, and for observers
+// with a thread of their own, how far they lag behind the publisher. As
+// measuring reads the clock twice per update, statistics are only kept once
+// enabled with setStatisticsEnabled(). They are available from
+// getStatistics() and are also recorded by Java Flight Recorder as
+// ObserverStatisticsEvents, to find the observers that take up most of the
+// time, until the observer is removed or the stream is closed.
+//
+// The price observers can be queried from any number of threads while the
+// stream keeps updating them. Their prices are published per stock with
+// release semantics, so queries never block the publisher and always return
+// a price the observer has actually calculated. Each of them can also export
+// a snapshot of the prices of all stocks.
+//
+// Observers can also be registered together with a ThrottlingPolicy, which
+// decides which events they receive: one in every N events of each stock, at
+// most a number of updates per second for each stock, or the first update of
+// each stock within fixed time buckets.
+//
+// MovingAveragePriceObserver blends each new price into the previous average,
+// as it always has. The analytics observers below calculate exact windowed
+// statistics instead, each in constant or logarithmic time per update:
+//
+// 1) SimpleMovingAveragePriceObserver: Average of the last N prices.
+// 2) ExponentialMovingAveragePriceObserver: Exponential moving average with a
+//    configurable smoothing factor.
+// 3) VwapObserver: Volume weighted average price, from events that carry the
+//    traded quantity.
+// 4) RollingPercentilePriceObserver: Percentiles, such as p50 or p99, of the
+//    last N prices.
+//
+// A single StockPriceStream publishes one event at a time, which limits it to
+// one core. A PartitionedStockPriceStream assigns every stock to one of a
+// number of shards, each with its own thread and its own observer instances,
+// so that different stocks are processed in parallel while the prices of each
+// stock stay in order. The per-shard results of observers such as
+// MaxPriceObserver can be merged to answer questions across all stocks.
 
 public class Observer {
 
@@ -61,25 +178,887 @@ public class Observer {
                null == observer.getAveragePrice("FDSA.L");
     }
 
-    public static void main(String[] args) {
-        StockPriceStream stream = new StockPriceStream();
+    private static void publishPrices(Consumer<StockPriceEvent> stream) {
+        stream.accept(new StockPriceEvent("VOD.L", 221.32));
+        stream.accept(new StockPriceEvent("RBS.L", 279.21));
+        stream.accept(new StockPriceEvent("VOD.L", 222.77));
+        stream.accept(new StockPriceEvent("RBS.L", 278.93));
+        stream.accept(new StockPriceEvent("VOD.L", 223.04));
+        stream.accept(new StockPriceEvent("VOD.L", 222.93));
+        stream.accept(new StockPriceEvent("RBS.L", 278.33));
+        stream.accept(new StockPriceEvent("VOD.L", 222.54));
+        stream.accept(new StockPriceEvent("RBS.L", 279.10));
+        stream.accept(new StockPriceEvent("VOD.L", 221.98));
+        stream.accept(new StockPriceEvent("VOD.L", 221.13));
+        stream.accept(new StockPriceEvent("RBS.L", 279.98));
+    }
+
+    private static boolean testAsyncStream() {
+        StockPriceStream stream =
+            new StockPriceStream(4, OverflowPolicy.BLOCK, Thread::new);
         MaxPriceObserver maxPriceObserver = new MaxPriceObserver(stream);
         MinPriceObserver minPriceObserver = new MinPriceObserver(stream);
-        MovingAveragePriceObserver avgPriceObserver = 
+        MovingAveragePriceObserver avgPriceObserver =
             new MovingAveragePriceObserver(stream, 5);
 
+        publishPrices(stream::publish);
+        stream.close();
+        return testMaxPriceObserver(maxPriceObserver) &&
+               testMinPriceObserver(minPriceObserver) &&
+               testMovingAveragePriceObserver(avgPriceObserver) &&
+               stream.getQueueDepth(maxPriceObserver) == 0;
+    }
+
+    private static boolean testAsyncStream_SlowObserver()
+            throws InterruptedException {
+        StockPriceStream stream = new StockPriceStream(4, Thread::new);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StockPriceObserver slowObserver = event -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        stream.addObserver(slowObserver);
+        MaxPriceObserver maxPriceObserver = new MaxPriceObserver(stream);
+
         stream.publish(new StockPriceEvent("VOD.L", 221.32));
-        stream.publish(new StockPriceEvent("RBS.L", 279.21));
+        started.await();
+        stream.publish(new StockPriceEvent("VOD.L", 223.04));
+        stream.publish(new StockPriceEvent("VOD.L", 222.93));
+        boolean testResult = stream.getQueueDepth(slowObserver) == 2;
+
+        release.countDown();
+        stream.close();
+        return testResult && stream.getQueueDepth(slowObserver) == 0 &&
+               223.04 == maxPriceObserver.getMaxPrice("VOD.L");
+    }
+
+    private static boolean testAsyncStream_StalledObserver()
+            throws InterruptedException {
+        StockPriceStream stream = new StockPriceStream(1, Thread::new);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Double> prices = new ArrayList<>();
+        StockPriceObserver stalledObserver = event -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        StockPriceObserver droppingObserver = event -> {
+            stalledObserver.update(event);
+            prices.add(event.getStockPrice());
+        };
+        stream.addObserver(stalledObserver);
+        stream.addObserver(droppingObserver, OverflowPolicy.DROP_NEWEST);
+        CountDownLatch lastPrice = new CountDownLatch(1);
+        stream.addObserver(event -> {
+            if (event.getStockPrice() == 279.98) {
+                lastPrice.countDown();
+            }
+        });
+
+        stream.publish(new StockPriceEvent("VOD.L", 221.32));
+        started.await();
+        long start = System.nanoTime();
+        publishPrices(stream::publish);
+        boolean testResult = System.nanoTime() - start < 1_000_000_000L &&
+            lastPrice.await(5, TimeUnit.SECONDS) &&
+            stream.getQueueDepth(stalledObserver) == 1 &&
+            stream.getDroppedCount(stalledObserver) == 11 &&
+            stream.getDroppedCount(droppingObserver) == 11;
+
+        release.countDown();
+        stream.close();
+        return testResult && prices.equals(Arrays.asList(221.32, 221.32));
+    }
+
+    private static boolean testAsyncStream_FailingObserver() {
+        AtomicLong failures = new AtomicLong();
+        StockPriceStream stream = new StockPriceStream(1,
+            OverflowPolicy.BLOCK, runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setUncaughtExceptionHandler(
+                    (t, e) -> failures.incrementAndGet());
+                return thread;
+            });
+        List<Double> prices = new ArrayList<>();
+        stream.addObserver(event -> {
+            if (event.getStockCode().equals("VOD.L")) {
+                throw new IllegalStateException("Failed");
+            }
+            prices.add(event.getStockPrice());
+        });
+        StockPriceObserver deadObserver = event -> {
+            throw new Error("Failed");
+        };
+        stream.addObserver(deadObserver);
+        MaxPriceObserver maxPriceObserver = new MaxPriceObserver(stream);
+
+        publishPrices(stream::publish);
+        stream.close();
+        return prices.equals(Arrays.asList(
+                   279.21, 278.93, 278.33, 279.10, 279.98)) &&
+               failures.get() == 7 + 1 &&
+               testMaxPriceObserver(maxPriceObserver);
+    }
+
+    private static boolean testConflatingObserver()
+            throws InterruptedException {
+        StockPriceStream stream = new StockPriceStream();
+        MaxPriceObserver maxPriceObserver = new MaxPriceObserver(stream);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Double> prices = new ArrayList<>();
+        stream.addConflatingObserver(event -> {
+            prices.add(event.getStockPrice());
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        stream.publish(new StockPriceEvent("VOD.L", 221.32));
+        started.await();
         stream.publish(new StockPriceEvent("VOD.L", 222.77));
-        stream.publish(new StockPriceEvent("RBS.L", 278.93));
+        stream.publish(new StockPriceEvent("RBS.L", 279.21));
         stream.publish(new StockPriceEvent("VOD.L", 223.04));
+        stream.publish(new StockPriceEvent("RBS.L", 278.93));
         stream.publish(new StockPriceEvent("VOD.L", 222.93));
-        stream.publish(new StockPriceEvent("RBS.L", 278.33));
-        stream.publish(new StockPriceEvent("VOD.L", 222.54));
+        release.countDown();
+        stream.close();
+
+        return prices.equals(Arrays.asList(221.32, 222.93, 278.93)) &&
+               223.04 == maxPriceObserver.getMaxPrice("VOD.L");
+    }
+
+    private static List<Double> publishThrottled(ThrottlingPolicy policy,
+                                                 AtomicLong clock) {
+        StockPriceStream stream = new StockPriceStream();
+        List<Double> prices = new ArrayList<>();
+        stream.addObserver(event -> prices.add(event.getStockPrice()), policy);
+        for (int i = 0; i < 10; i++) {
+            clock.set(i * 100_000_000L);
+            stream.publish(new StockPriceEvent("VOD.L", 220 + i));
+            stream.publish(new StockPriceEvent("RBS.L", 270 + i));
+        }
+        return prices;
+    }
+
+    private static boolean testOneInNThrottlingPolicy() {
+        List<Double> prices = publishThrottled(
+            new OneInNThrottlingPolicy(4), new AtomicLong());
+        return prices.equals(Arrays.asList(
+            220.0, 270.0, 224.0, 274.0, 228.0, 278.0));
+    }
+
+    private static boolean testRateLimitThrottlingPolicy() {
+        AtomicLong clock = new AtomicLong();
+        List<Double> prices = publishThrottled(
+            new RateLimitThrottlingPolicy(3, clock::get), clock);
+        return prices.equals(Arrays.asList(
+            220.0, 270.0, 224.0, 274.0, 228.0, 278.0));
+    }
+
+    private static boolean testSamplingThrottlingPolicy() {
+        AtomicLong clock = new AtomicLong();
+        List<Double> prices = publishThrottled(
+            new SamplingThrottlingPolicy(250, TimeUnit.MILLISECONDS,
+                                         clock::get), clock);
+        return prices.equals(Arrays.asList(
+            220.0, 270.0, 223.0, 273.0, 225.0, 275.0, 228.0, 278.0));
+    }
+
+    private static boolean testThrottlingPolicy_ManyStocks() {
+        AtomicLong clock = new AtomicLong();
+        ThrottlingPolicy[] policies = {
+            new OneInNThrottlingPolicy(2),
+            new RateLimitThrottlingPolicy(1, clock::get),
+            new SamplingThrottlingPolicy(1, TimeUnit.SECONDS, clock::get)
+        };
+        for (ThrottlingPolicy policy : policies) {
+            for (int i = 0; i < 200; i++) {
+                StockPriceEvent event =
+                    new StockPriceEvent("THROTTLE" + i + ".L", i);
+                if (!policy.accept(event) || policy.accept(event)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean testModifyObserversDuringPublish() {
+        StockPriceStream stream = new StockPriceStream();
+        List<Double> prices = new ArrayList<>();
+        StockPriceObserver lateObserver = event -> prices.add(-1.0);
+        stream.addObserver(new StockPriceObserver() {
+            public void update(StockPriceEvent event) {
+                prices.add(event.getStockPrice());
+                stream.removeObserver(this);
+                stream.addObserver(lateObserver);
+            }
+        });
+
+        stream.publish(new StockPriceEvent("VOD.L", 221.32));
+        stream.publish(new StockPriceEvent("VOD.L", 222.77));
+        return prices.equals(Arrays.asList(221.32, -1.0));
+    }
+
+    private static boolean testFilteredObservers() {
+        StockPriceStream stream = new StockPriceStream();
+        List<String> vodafone = new ArrayList<>();
+        List<String> london = new ArrayList<>();
+        List<String> newYork = new ArrayList<>();
+        List<String> late = new ArrayList<>();
+        List<String> all = new ArrayList<>();
+        stream.addObserver(event -> vodafone.add(event.getStockCode()),
+                           Set.of("VOD.L"));
+        StockPriceObserver londonObserver =
+            event -> london.add(event.getStockCode());
+        stream.addObserver(londonObserver, Set.of("*.L"));
+        stream.addObserver(event -> newYork.add(event.getStockCode()),
+                           Set.of("*.N", "IBM"));
+
+        stream.publish(new StockPriceEvent("VOD.L", 221.32));
+        stream.publish(new StockPriceEvent("RBS.L", 279.21));
+        stream.publish(new StockPriceEvent("IBM", 140.12));
+        stream.addObserver(event -> late.add(event.getStockCode()),
+                           Set.of("R*S.L"));
+        stream.publish(new StockPriceEvent("RBS.L", 278.93));
+        stream.publish(new StockPriceEvent("VOD.L", 222.77));
+        stream.removeObserver(londonObserver);
+        stream.addObserver(event -> all.add(event.getStockCode()));
         stream.publish(new StockPriceEvent("RBS.L", 279.10));
-        stream.publish(new StockPriceEvent("VOD.L", 221.98));
+        stream.publish(new StockPriceEvent("IBM", 141.02));
+
+        return vodafone.equals(Arrays.asList("VOD.L", "VOD.L")) &&
+               london.equals(
+                   Arrays.asList("VOD.L", "RBS.L", "RBS.L", "VOD.L")) &&
+               newYork.equals(Arrays.asList("IBM", "IBM")) &&
+               late.equals(Arrays.asList("RBS.L", "RBS.L")) &&
+               all.equals(Arrays.asList("RBS.L", "IBM"));
+    }
+
+    private static boolean testWeakObservers() throws InterruptedException {
+        StockPriceStream stream = new StockPriceStream();
+        MaxPriceObserver maxPriceObserver = new MaxPriceObserver(stream);
+        List<Double> prices = new ArrayList<>();
+        StockPriceObserver weakObserver = event -> prices.add(1.0);
+        stream.addWeakObserver(weakObserver);
+        stream.addWeakObserver(new MinPriceObserver(new StockPriceStream()));
+
+        stream.publish(new StockPriceEvent("VOD.L", 221.32));
+        if (prices.size() != 1) {
+            return false;
+        }
+        weakObserver = null;
+        for (int i = 0; i < 100 && stream.getObserverCount() > 1; i++) {
+            System.gc();
+            Thread.sleep(10);
+            stream.publish(new StockPriceEvent("VOD.L", 222.77));
+        }
+        int delivered = prices.size();
         stream.publish(new StockPriceEvent("VOD.L", 221.13));
-        stream.publish(new StockPriceEvent("RBS.L", 279.98));
+        return stream.getObserverCount() == 1 &&
+               prices.size() == delivered &&
+               222.77 == maxPriceObserver.getMaxPrice("VOD.L");
+    }
+
+    private static boolean testStockPriceJournal() throws IOException {
+        Path directory = Files.createTempDirectory("journal");
+        AtomicLong clock = new AtomicLong();
+        try {
+            StockPriceStream stream = new StockPriceStream();
+            MaxPriceObserver maxPriceObserver =
+                new MaxPriceObserver(new StockPriceStream());
+            try (StockPriceJournal journal = new StockPriceJournal(
+                     directory, 5, () -> clock.getAndAdd(10))) {
+                stream.addObserver(journal);
+                publishPrices(stream::publish);
+                journal.replayAndAddObserver(stream, 0, maxPriceObserver);
+                stream.publish(new StockPriceEvent("VOD.L", 223.50));
+                if (journal.size() != 13 || journal.offsetOf(55) != 6 ||
+                    223.50 != maxPriceObserver.getMaxPrice("VOD.L")) {
+                    return false;
+                }
+            }
+
+            Files.write(directory.resolve("symbols.dat"),
+                        new byte[] {0, 6, 'B', 'A'},
+                        StandardOpenOption.APPEND);
+            MinPriceObserver minPriceObserver =
+                new MinPriceObserver(new StockPriceStream());
+            List<Double> prices = new ArrayList<>();
+            try (StockPriceJournal journal = new StockPriceJournal(
+                     directory, 5, () -> 0)) {
+                journal.append(new StockPriceEvent("BARC.L", 180.20));
+                journal.replay(0, minPriceObserver);
+                journal.replaySince(100, event ->
+                    prices.add(event.getStockPrice()));
+                if (journal.size() != 14 ||
+                    !testMinPriceObserver(minPriceObserver) ||
+                    !prices.equals(
+                        Arrays.asList(221.13, 279.98, 223.50, 180.20))) {
+                    return false;
+                }
+            }
+
+            List<String> stockCodes = new ArrayList<>();
+            StockPriceStream asyncStream = new StockPriceStream(4, Thread::new);
+            try (StockPriceJournal journal = new StockPriceJournal(
+                     directory, 5, () -> 0)) {
+                journal.replay(12, event ->
+                    stockCodes.add(event.getStockCode()));
+                asyncStream.addObserver(journal);
+                journal.replayAndAddObserver(asyncStream, 0, event -> {});
+                return false;
+            } catch (IllegalStateException e) {
+                return stockCodes.equals(Arrays.asList("VOD.L", "BARC.L"));
+            } finally {
+                asyncStream.close();
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder())
+                     .map(Path::toFile)
+                     .forEach(File::delete);
+            }
+        }
+    }
+
+    private static boolean testBinaryTickDecoder() throws IOException {
+        ByteBuffer records =
+            ByteBuffer.allocate(12 * BinaryTickDecoder.RECORD_SIZE);
+        publishPrices(event -> BinaryTickDecoder.encode(event.getStockCode(),
+            event.getStockPrice(), event.getQuantity(), records));
+        records.flip();
+
+        StockPriceStream stream = new StockPriceStream();
+        MaxPriceObserver maxPriceObserver = new MaxPriceObserver(stream);
+        BinaryTickDecoder decoder = new BinaryTickDecoder(stream);
+        ByteBuffer partial = records.duplicate();
+        partial.limit(BinaryTickDecoder.RECORD_SIZE * 5 / 2);
+        int decoded = decoder.decode(partial);
+        StockPriceEvent lastEvent = stream.getEvent();
+        partial.limit(records.limit());
+        decoded += decoder.decode(partial);
+
+        List<StockPriceEvent> events = new ArrayList<>();
+        StockPriceStream asyncStream =
+            new StockPriceStream(4, OverflowPolicy.BLOCK, Thread::new);
+        MinPriceObserver minPriceObserver = new MinPriceObserver(asyncStream);
+        asyncStream.addObserver(events::add);
+        long channelDecoded = new BinaryTickDecoder(asyncStream).decode(
+            Channels.newChannel(new ByteArrayInputStream(
+                records.array(), 0, records.limit())));
+        asyncStream.close();
+
+        return decoded == 12 && channelDecoded == 12 &&
+               testMaxPriceObserver(maxPriceObserver) &&
+               testMinPriceObserver(minPriceObserver) &&
+               279.21 == lastEvent.getStockPrice() &&
+               279.98 == stream.getEvent().getStockPrice() &&
+               events.size() == 12 &&
+               "VOD.L".equals(events.get(0).getStockCode()) &&
+               221.32 == events.get(0).getStockPrice();
+    }
+
+    private static boolean testBinaryTickDecoder_ZeroAllocation() {
+        ByteBuffer records =
+            ByteBuffer.allocateDirect(50_000 * BinaryTickDecoder.RECORD_SIZE);
+        for (int i = 0; i < 50_000; i++) {
+            BinaryTickDecoder.encode("TICK" + i % 1000 + ".L", i, 100, records);
+        }
+        StockPriceStream stream = new StockPriceStream();
+        new MaxPriceObserver(stream);
+        new VwapObserver(stream);
+        BinaryTickDecoder decoder = new BinaryTickDecoder(stream);
+        for (int i = 0; i < 10; i++) {
+            records.flip();
+            decoder.decode(records);
+        }
+
+        ThreadMXBean threads =
+            (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 10; i++) {
+            records.flip();
+            decoder.decode(records);
+        }
+        allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+        return allocated < 50_000;
+    }
+
+    private static class PriceSubscriber
+            implements Flow.Subscriber<StockPriceEvent> {
+
+        final List<Double> prices = new ArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        final long initialRequest;
+        Flow.Subscription subscription;
+
+        PriceSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        public synchronized void onNext(StockPriceEvent event) {
+            prices.add(event.getStockPrice());
+        }
+
+        public void onError(Throwable throwable) {}
+
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+
+    private static boolean testFlowPublisher_Backpressure() {
+        StockPriceStream stream = new StockPriceStream();
+        StockPricePublisher publisher = new StockPricePublisher(
+            stream, 16, OverflowPolicy.DROP_NEWEST, Runnable::run);
+        PriceSubscriber subscriber = new PriceSubscriber(2);
+        publisher.subscribe(subscriber);
+
+        publishPrices(stream::publish);
+        if (!subscriber.prices.equals(Arrays.asList(221.32, 279.21))) {
+            return false;
+        }
+        subscriber.subscription.request(3);
+        if (subscriber.prices.size() != 5) {
+            return false;
+        }
+        subscriber.subscription.request(Long.MAX_VALUE);
+        return subscriber.prices.size() == 12 &&
+               publisher.getDroppedCount() == 0;
+    }
+
+    private static boolean testFlowPublisher_Drop() {
+        StockPriceStream stream = new StockPriceStream();
+        StockPricePublisher publisher = new StockPricePublisher(
+            stream, 4, OverflowPolicy.DROP_NEWEST, Runnable::run);
+        PriceSubscriber subscriber = new PriceSubscriber(0);
+        publisher.subscribe(subscriber);
+
+        publishPrices(stream::publish);
+        subscriber.subscription.request(100);
+        return subscriber.prices.equals(
+                   Arrays.asList(221.32, 279.21, 222.77, 278.93)) &&
+               publisher.getDroppedCount() == 8;
+    }
+
+    private static boolean testFlowPublisher_Conflate() {
+        StockPriceStream stream = new StockPriceStream();
+        StockPricePublisher publisher = new StockPricePublisher(
+            stream, 2, OverflowPolicy.CONFLATE, Runnable::run);
+        PriceSubscriber subscriber = new PriceSubscriber(0);
+        publisher.subscribe(subscriber);
+
+        publishPrices(stream::publish);
+        subscriber.subscription.request(100);
+        subscriber.subscription.cancel();
+        stream.publish(new StockPriceEvent("VOD.L", 223.50));
+        return subscriber.prices.equals(
+                   Arrays.asList(221.32, 279.21, 221.13, 279.98)) &&
+               stream.getObserverCount() == 0 &&
+               publisher.getSubscriberCount() == 0;
+    }
+
+    private static boolean testFlowPublisher_Complete()
+            throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        StockPriceStream stream = new StockPriceStream();
+        StockPricePublisher publisher = new StockPricePublisher(
+            stream, 16, OverflowPolicy.DROP_NEWEST, executor);
+        PriceSubscriber subscriber = new PriceSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+
+        publishPrices(stream::publish);
+        publisher.close();
+        boolean completed = subscriber.completed.await(5, TimeUnit.SECONDS);
+        PriceSubscriber lateSubscriber = new PriceSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(lateSubscriber);
+        completed &= lateSubscriber.completed.await(5, TimeUnit.SECONDS);
+        executor.shutdown();
+        synchronized (subscriber) {
+            return completed && subscriber.prices.size() == 12 &&
+                   lateSubscriber.subscription != null &&
+                   lateSubscriber.prices.isEmpty() &&
+                   publisher.getSubscriberCount() == 0 &&
+                   stream.getObserverCount() == 0;
+        }
+    }
+
+    private static boolean testLatencyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100_000; i++) {
+            histogram.record(i);
+        }
+        long p50 = histogram.getPercentile(50);
+        long p99 = histogram.getPercentile(99);
+        return histogram.getCount() == 100_000 &&
+               p50 >= 50_000 && p50 <= 50_000 * 1.125 &&
+               p99 >= 99_000 && p99 <= 99_000 * 1.125 &&
+               new LatencyHistogram().getPercentile(99) == 0;
+    }
+
+    private static boolean testObserverStatistics() {
+        StockPriceStream stream = new StockPriceStream();
+        stream.setStatisticsEnabled(true);
+        StockPriceObserver slowObserver = event -> {
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        stream.addObserver(slowObserver);
+        MaxPriceObserver maxPriceObserver = new MaxPriceObserver(stream);
+        publishPrices(stream::publish);
+
+        ObserverStatistics slow = stream.getStatistics(slowObserver);
+        ObserverStatistics fast = stream.getStatistics(maxPriceObserver);
+        boolean testResult = stream.getStatistics().size() == 2 &&
+                             slow.getInvocationCount() == 12 &&
+                             fast.getInvocationCount() == 12 &&
+                             slow.getTotalLatencyNanos() >= 24_000_000 &&
+                             slow.getLatencyPercentileNanos(50) >= 2_000_000 &&
+                             fast.getLatencyPercentileNanos(50) <
+                                 slow.getLatencyPercentileNanos(50) &&
+                             slow.getLagPercentileNanos(99) == 0 &&
+                             MaxPriceObserver.class.getName().equals(
+                                 fast.getObserverName()) &&
+                             ObserverStatisticsEvent.isRegistered(fast);
+
+        stream.removeObserver(slowObserver);
+        testResult &= !ObserverStatisticsEvent.isRegistered(slow);
+        stream.setStatisticsEnabled(false);
+        publishPrices(stream::publish);
+        return testResult && !ObserverStatisticsEvent.isRegistered(fast) &&
+               fast.getInvocationCount() == 12 &&
+               stream.getStatistics(maxPriceObserver) == null &&
+               stream.getStatistics().isEmpty();
+    }
+
+    private static boolean testObserverStatistics_Lag()
+            throws InterruptedException {
+        StockPriceStream stream = new StockPriceStream(4, Thread::new);
+        stream.setStatisticsEnabled(true);
+        CountDownLatch release = new CountDownLatch(1);
+        StockPriceObserver slowObserver = event -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        stream.addObserver(slowObserver);
+        stream.publish(new StockPriceEvent("VOD.L", 221.32));
+        stream.publish(new StockPriceEvent("VOD.L", 223.04));
+        Thread.sleep(20);
+        release.countDown();
+        stream.close();
+
+        ObserverStatistics statistics = stream.getStatistics(slowObserver);
+        return statistics.getInvocationCount() == 2 &&
+               statistics.getLagPercentileNanos(100) >= 20_000_000 &&
+               statistics.getLatencyPercentileNanos(100) >= 20_000_000 &&
+               !ObserverStatisticsEvent.isRegistered(statistics);
+    }
+
+    private static boolean testObserverStatisticsEvent()
+            throws IOException, InterruptedException {
+        Path file = Files.createTempFile("observer", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(ObserverStatisticsEvent.class)
+                     .withPeriod(Duration.ofMillis(10));
+            recording.start();
+            StockPriceStream stream = new StockPriceStream();
+            stream.setStatisticsEnabled(true);
+            MaxPriceObserver maxPriceObserver = new MaxPriceObserver(stream);
+            publishPrices(stream::publish);
+            Thread.sleep(100);
+            recording.stop();
+            recording.dump(file);
+
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName()
+                        .equals("observer.ObserverStatistics") &&
+                    event.getString("observer")
+                        .equals(MaxPriceObserver.class.getName()) &&
+                    event.getLong("invocations") == 12) {
+                    return maxPriceObserver.getMaxPrice("VOD.L") != null;
+                }
+            }
+            return false;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static boolean testConcurrentQueries()
+            throws InterruptedException {
+        StockPriceStream stream = new StockPriceStream();
+        MaxPriceObserver maxPriceObserver = new MaxPriceObserver(stream);
+        VwapObserver vwapObserver = new VwapObserver(stream);
+        String[] stockCodes = new String[100];
+        for (int i = 0; i < stockCodes.length; i++) {
+            stockCodes[i] = "QUERY" + i + ".L";
+        }
+
+        AtomicLong failures = new AtomicLong();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 200_000; i++) {
+                stream.publish(new StockPriceEvent(
+                    stockCodes[i % stockCodes.length], i, 1 + i % 7));
+            }
+        });
+        Runnable reader = () -> {
+            double[] lastPrices = new double[stockCodes.length];
+            while (writer.isAlive()) {
+                for (int i = 0; i < stockCodes.length; i++) {
+                    Double vwap = vwapObserver.getVwap(stockCodes[i]);
+                    Double price = maxPriceObserver.getMaxPrice(stockCodes[i]);
+                    if (price != null) {
+                        if (price < lastPrices[i] ||
+                            price % stockCodes.length != i ||
+                            (vwap != null && vwap > price)) {
+                            failures.incrementAndGet();
+                        }
+                        lastPrices[i] = price;
+                    }
+                }
+                for (double price : maxPriceObserver.getMaxPrices().values()) {
+                    if (Double.isNaN(price)) {
+                        failures.incrementAndGet();
+                    }
+                }
+            }
+        };
+
+        Thread[] readers = {new Thread(reader), new Thread(reader)};
+        writer.start();
+        for (Thread thread : readers) {
+            thread.start();
+        }
+        writer.join();
+        for (Thread thread : readers) {
+            thread.join();
+        }
+        return failures.get() == 0 &&
+               199_999.0 == maxPriceObserver.getMaxPrice("QUERY99.L") &&
+               maxPriceObserver.getMaxPrices().keySet()
+                   .containsAll(Arrays.asList(stockCodes));
+    }
+
+    private static boolean testSymbolDictionary() {
+        SymbolDictionary dictionary = SymbolDictionary.getInstance();
+        int vodafone = dictionary.intern("VOD.L");
+        StockPriceEvent event = new StockPriceEvent("VOD.L", 221.32);
+        return event.getSymbolId() == vodafone &&
+               dictionary.intern("VOD.L") == vodafone &&
+               dictionary.intern("BARC.L") != vodafone &&
+               "VOD.L".equals(dictionary.getStockCode(vodafone)) &&
+               dictionary.lookup("UNKNOWN.L") == -1;
+    }
+
+    private static boolean testSimpleMovingAveragePriceObserver() {
+        StockPriceStream stream = new StockPriceStream();
+        SimpleMovingAveragePriceObserver observer =
+            new SimpleMovingAveragePriceObserver(stream, 3);
+        publishPrices(stream::publish);
+        return Math.abs(observer.getAveragePrice("VOD.L") -
+                        (222.54 + 221.98 + 221.13) / 3) < 1e-9 &&
+               Math.abs(observer.getAveragePrice("RBS.L") -
+                        (278.33 + 279.10 + 279.98) / 3) < 1e-9 &&
+               null == observer.getAveragePrice("FDSA.L");
+    }
+
+    private static boolean testExponentialMovingAveragePriceObserver() {
+        StockPriceStream stream = new StockPriceStream();
+        ExponentialMovingAveragePriceObserver observer =
+            new ExponentialMovingAveragePriceObserver(stream, 0.5);
+        stream.publish(new StockPriceEvent("VOD.L", 220.0));
+        stream.publish(new StockPriceEvent("VOD.L", 224.0));
+        stream.publish(new StockPriceEvent("VOD.L", 226.0));
+        return 224.0 == observer.getAveragePrice("VOD.L") &&
+               null == observer.getAveragePrice("FDSA.L");
+    }
+
+    private static boolean testVwapObserver() {
+        StockPriceStream stream = new StockPriceStream();
+        VwapObserver observer = new VwapObserver(stream);
+        stream.publish(new StockPriceEvent("VOD.L", 220.0, 100));
+        stream.publish(new StockPriceEvent("VOD.L", 224.0, 300));
+        stream.publish(new StockPriceEvent("VOD.L", 500.0));
+        return 223.0 == observer.getVwap("VOD.L") &&
+               null == observer.getVwap("FDSA.L");
+    }
+
+    private static boolean testRollingPercentilePriceObserver() {
+        StockPriceStream stream = new StockPriceStream();
+        RollingPercentilePriceObserver observer =
+            new RollingPercentilePriceObserver(stream, 100);
+        Random random = new Random(42);
+        double[] prices = new double[1000];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = Math.round(random.nextDouble() * 1000) / 10.0;
+            stream.publish(new StockPriceEvent("VOD.L", prices[i]));
+
+            int count = Math.min(i + 1, 100);
+            double[] window =
+                Arrays.copyOfRange(prices, i + 1 - count, i + 1);
+            Arrays.sort(window);
+            for (double percentile : new double[] {1, 50, 99, 100}) {
+                int rank = (int) Math.ceil(percentile / 100 * count);
+                if (window[rank - 1] !=
+                        observer.getPercentile("VOD.L", percentile)) {
+                    return false;
+                }
+            }
+        }
+        return null == observer.getPercentile("FDSA.L", 50);
+    }
+
+    private static boolean testPartitionedStream() {
+        List<MaxPriceObserver> maxPriceObservers;
+        List<MinPriceObserver> minPriceObservers;
+        int vodafone;
+        boolean[] outOfOrder = new boolean[1];
+        try (PartitionedStockPriceStream stream =
+                 new PartitionedStockPriceStream(4, 64, Thread::new)) {
+            maxPriceObservers = stream.addObserver(MaxPriceObserver::new);
+            minPriceObservers = stream.addObserver(MinPriceObserver::new);
+            stream.addObserver(shard -> {
+                SymbolPriceTable lastPrices = new SymbolPriceTable();
+                StockPriceObserver observer = event -> {
+                    double lastPrice = lastPrices.get(event.getSymbolId());
+                    if (event.getStockCode().startsWith("SHARD") &&
+                            lastPrice >= event.getStockPrice()) {
+                        outOfOrder[0] = true;
+                    }
+                    lastPrices.set(event.getSymbolId(), event.getStockPrice());
+                };
+                shard.addObserver(observer);
+                return observer;
+            });
+
+            for (int i = 0; i < 10_000; i++) {
+                stream.publish(
+                    new StockPriceEvent("SHARD" + i % 100 + ".L", i));
+            }
+            publishPrices(stream::publish);
+            stream.flush();
+            vodafone = stream.getShard("VOD.L");
+            if (stream.getShard("UNPUBLISHED.L") != -1 ||
+                SymbolDictionary.getInstance().lookup("UNPUBLISHED.L") != -1) {
+                return false;
+            }
+        }
+
+        MaxPriceObserver maxPriceObserver =
+            new MaxPriceObserver(new StockPriceStream());
+        for (MaxPriceObserver observer : maxPriceObservers) {
+            maxPriceObserver.merge(observer);
+        }
+        MinPriceObserver minPriceObserver =
+            new MinPriceObserver(new StockPriceStream());
+        for (MinPriceObserver observer : minPriceObservers) {
+            minPriceObserver.merge(observer);
+        }
+        return !outOfOrder[0] &&
+               223.04 == maxPriceObservers.get(vodafone).getMaxPrice("VOD.L") &&
+               testMaxPriceObserver(maxPriceObserver) &&
+               testMinPriceObserver(minPriceObserver) &&
+               9999.0 == maxPriceObserver.getMaxPrice("SHARD99.L") &&
+               0.0 == minPriceObserver.getMinPrice("SHARD0.L");
+    }
+
+    private static boolean testPartitionedStream_Flush()
+            throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        PartitionedStockPriceStream stream =
+            new PartitionedStockPriceStream(2, 4, Thread::new);
+        stream.addObserver(shard -> {
+            StockPriceObserver observer = event -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            shard.addObserver(observer);
+            return observer;
+        });
+
+        stream.publish(new StockPriceEvent("VOD.L", 221.32));
+        boolean testResult = !stream.flush(50, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 4; i++) {
+            stream.publish(new StockPriceEvent("VOD.L", 222.93));
+        }
+        Thread.currentThread().interrupt();
+        testResult &= !stream.publish(new StockPriceEvent("VOD.L", 223.04)) &&
+                      Thread.interrupted();
+        release.countDown();
+        testResult &= stream.flush(10, TimeUnit.SECONDS);
+        stream.close();
+        try {
+            stream.publish(new StockPriceEvent("VOD.L", 222.77));
+            return false;
+        } catch (IllegalStateException e) {
+            return testResult;
+        }
+    }
+
+    private static boolean testObservers_ZeroAllocation() {
+        StockPriceStream stream = new StockPriceStream();
+        new MaxPriceObserver(stream);
+        new MinPriceObserver(stream);
+        new MovingAveragePriceObserver(stream, 5);
+        StockPriceEvent[] events = new StockPriceEvent[50_000];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new StockPriceEvent("SYM" + i + ".L", i);
+        }
+        for (StockPriceEvent event : events) {
+            stream.publish(event);
+        }
+
+        ThreadMXBean threads =
+            (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 10; i++) {
+            for (StockPriceEvent event : events) {
+                stream.publish(event);
+            }
+        }
+        allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+        return allocated < events.length;
+    }
+
+    public static void main(String[] args)
+            throws IOException, InterruptedException {
+        StockPriceStream stream = new StockPriceStream();
+        MaxPriceObserver maxPriceObserver = new MaxPriceObserver(stream);
+        MinPriceObserver minPriceObserver = new MinPriceObserver(stream);
+        MovingAveragePriceObserver avgPriceObserver = 
+            new MovingAveragePriceObserver(stream, 5);
+
+        publishPrices(stream::publish);
 
         int counter = 0;
         if (!testMaxPriceObserver(maxPriceObserver)) {
@@ -94,6 +1073,136 @@ public class Observer {
             System.out.println("Average price observer test failed!");
             counter++;
         }
+        if (!testAsyncStream()) {
+            System.out.println("Async stream test failed!");
+            counter++;
+        }
+        if (!testAsyncStream_SlowObserver()) {
+            System.out.println("Async stream slow observer test failed!");
+            counter++;
+        }
+        if (!testAsyncStream_StalledObserver()) {
+            System.out.println("Async stream stalled observer test failed!");
+            counter++;
+        }
+        if (!testAsyncStream_FailingObserver()) {
+            System.out.println("Async stream failing observer test failed!");
+            counter++;
+        }
+        if (!testConflatingObserver()) {
+            System.out.println("Conflating observer test failed!");
+            counter++;
+        }
+        if (!testOneInNThrottlingPolicy()) {
+            System.out.println("One in N throttling policy test failed!");
+            counter++;
+        }
+        if (!testRateLimitThrottlingPolicy()) {
+            System.out.println("Rate limit throttling policy test failed!");
+            counter++;
+        }
+        if (!testSamplingThrottlingPolicy()) {
+            System.out.println("Sampling throttling policy test failed!");
+            counter++;
+        }
+        if (!testThrottlingPolicy_ManyStocks()) {
+            System.out.println("Throttling policy many stocks test failed!");
+            counter++;
+        }
+        if (!testModifyObserversDuringPublish()) {
+            System.out.println("Modify observers during publish test failed!");
+            counter++;
+        }
+        if (!testFilteredObservers()) {
+            System.out.println("Filtered observers test failed!");
+            counter++;
+        }
+        if (!testWeakObservers()) {
+            System.out.println("Weak observers test failed!");
+            counter++;
+        }
+        if (!testStockPriceJournal()) {
+            System.out.println("Stock price journal test failed!");
+            counter++;
+        }
+        if (!testBinaryTickDecoder()) {
+            System.out.println("Binary tick decoder test failed!");
+            counter++;
+        }
+        if (!testBinaryTickDecoder_ZeroAllocation()) {
+            System.out.println(
+                "Binary tick decoder zero allocation test failed!");
+            counter++;
+        }
+        if (!testFlowPublisher_Backpressure()) {
+            System.out.println("Flow publisher backpressure test failed!");
+            counter++;
+        }
+        if (!testFlowPublisher_Drop()) {
+            System.out.println("Flow publisher drop test failed!");
+            counter++;
+        }
+        if (!testFlowPublisher_Conflate()) {
+            System.out.println("Flow publisher conflate test failed!");
+            counter++;
+        }
+        if (!testFlowPublisher_Complete()) {
+            System.out.println("Flow publisher complete test failed!");
+            counter++;
+        }
+        if (!testLatencyHistogram()) {
+            System.out.println("Latency histogram test failed!");
+            counter++;
+        }
+        if (!testObserverStatistics()) {
+            System.out.println("Observer statistics test failed!");
+            counter++;
+        }
+        if (!testObserverStatistics_Lag()) {
+            System.out.println("Observer statistics lag test failed!");
+            counter++;
+        }
+        if (!testObserverStatisticsEvent()) {
+            System.out.println("Observer statistics event test failed!");
+            counter++;
+        }
+        if (!testConcurrentQueries()) {
+            System.out.println("Concurrent queries test failed!");
+            counter++;
+        }
+        if (!testSymbolDictionary()) {
+            System.out.println("Symbol dictionary test failed!");
+            counter++;
+        }
+        if (!testSimpleMovingAveragePriceObserver()) {
+            System.out.println("Simple moving average observer test failed!");
+            counter++;
+        }
+        if (!testExponentialMovingAveragePriceObserver()) {
+            System.out.println(
+                "Exponential moving average observer test failed!");
+            counter++;
+        }
+        if (!testVwapObserver()) {
+            System.out.println("VWAP observer test failed!");
+            counter++;
+        }
+        if (!testRollingPercentilePriceObserver()) {
+            System.out.println("Rolling percentile observer test failed!");
+            counter++;
+        }
+        if (!testPartitionedStream()) {
+            System.out.println("Partitioned stream test failed!");
+            counter++;
+        }
+        if (!testPartitionedStream_Flush()) {
+            System.out.println("Partitioned stream flush test failed!");
+            counter++;
+        }
+        if (!testObservers_ZeroAllocation()) {
+            System.out.println("Observers zero allocation test failed!");
+            counter++;
+        }
         System.out.println(counter + " tests failed.");
     }
 }
@@ -0,0 +1,57 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+// Measures how an observer keeps up with its stream: how often update() was
+// called, how long the calls took, and, for observers running on a thread of
+// their own, how long events waited between being published and reaching the
+// observer. Only the subscription delivering the events records them, from
+// one thread at a time, while the figures can be read from any thread.
+// Statistics are only collected for streams that enable them, and are then
+// also reported periodically to Java Flight Recorder as
+// ObserverStatisticsEvents, until the observer is removed or the stream is
+// closed.
+
+public class ObserverStatistics {
+
+    private final String observerName;
+    private final AtomicLong invocationCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LatencyHistogram lags = new LatencyHistogram();
+
+    ObserverStatistics(String observerName) {
+        this.observerName = observerName;
+    }
+
+    public String getObserverName() {
+        return observerName;
+    }
+
+    public long getInvocationCount() {
+        return invocationCount.get();
+    }
+
+    public long getTotalLatencyNanos() {
+        return totalLatencyNanos.get();
+    }
+
+    public long getLatencyPercentileNanos(double percentile) {
+        return latencies.getPercentile(percentile);
+    }
+
+    // Returns 0 for synchronous observers, which are called while the event
+    // is being published.
+    public long getLagPercentileNanos(double percentile) {
+        return lags.getPercentile(percentile);
+    }
+
+    void recordUpdate(long startNanos, long endNanos) {
+        long latency = endNanos - startNanos;
+        invocationCount.lazySet(invocationCount.get() + 1);
+        totalLatencyNanos.lazySet(totalLatencyNanos.get() + latency);
+        latencies.record(latency);
+    }
+
+    void recordLag(long lagNanos) {
+        lags.record(lagNanos);
+    }
+}
@@ -0,0 +1,93 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Timespan;
+
+// Periodic Java Flight Recorder event reporting the statistics of every
+// observer. Emitting the statistics from a periodic hook, rather than an
+// event per update, keeps the cost off the publishing path. Subscriptions
+// register their statistics when statistics are enabled and unregister them
+// when disabled or closed. The statistics are also held weakly, so those of
+// a stream that is dropped without being closed do not stay around.
+
+@Name("observer.ObserverStatistics")
+@Label("Observer Statistics")
+@Category("Observer")
+@Description("Invocation count, latency and lag of a stock price observer")
+@Period("1 s")
+public class ObserverStatisticsEvent extends Event {
+
+    private static final Set<ObserverStatistics> STATISTICS =
+        Collections.newSetFromMap(new WeakHashMap<>());
+
+    static {
+        FlightRecorder.addPeriodicEvent(ObserverStatisticsEvent.class,
+            ObserverStatisticsEvent::emit);
+    }
+
+    @Label("Observer")
+    String observer;
+
+    @Label("Invocations")
+    long invocations;
+
+    @Label("Total Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long totalLatency;
+
+    @Label("Latency p50")
+    @Timespan(Timespan.NANOSECONDS)
+    long latencyP50;
+
+    @Label("Latency p99")
+    @Timespan(Timespan.NANOSECONDS)
+    long latencyP99;
+
+    @Label("Lag p99")
+    @Timespan(Timespan.NANOSECONDS)
+    long lagP99;
+
+    static void register(ObserverStatistics statistics) {
+        synchronized (STATISTICS) {
+            STATISTICS.add(statistics);
+        }
+    }
+
+    static void unregister(ObserverStatistics statistics) {
+        synchronized (STATISTICS) {
+            STATISTICS.remove(statistics);
+        }
+    }
+
+    static boolean isRegistered(ObserverStatistics statistics) {
+        synchronized (STATISTICS) {
+            return STATISTICS.contains(statistics);
+        }
+    }
+
+    private static void emit() {
+        List<ObserverStatistics> snapshot;
+        synchronized (STATISTICS) {
+            snapshot = new ArrayList<>(STATISTICS);
+        }
+        for (ObserverStatistics statistics : snapshot) {
+            ObserverStatisticsEvent event = new ObserverStatisticsEvent();
+            event.observer = statistics.getObserverName();
+            event.invocations = statistics.getInvocationCount();
+            event.totalLatency = statistics.getTotalLatencyNanos();
+            event.latencyP50 = statistics.getLatencyPercentileNanos(50);
+            event.latencyP99 = statistics.getLatencyPercentileNanos(99);
+            event.lagP99 = statistics.getLagPercentileNanos(99);
+            event.commit();
+        }
+    }
+}
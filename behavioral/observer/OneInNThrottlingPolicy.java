@@ -0,0 +1,28 @@
+import java.util.Arrays;
+
+public class OneInNThrottlingPolicy implements ThrottlingPolicy {
+
+    private int[] counters = new int[64];
+    private final int n;
+
+    public OneInNThrottlingPolicy(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Invalid n: " + n);
+        }
+        this.n = n;
+    }
+
+    @Override
+    public boolean accept(StockPriceEvent event) {
+        int symbolId = event.getSymbolId();
+        if (symbolId >= counters.length) {
+            counters = Arrays.copyOf(counters,
+                Math.max(symbolId + 1, counters.length * 2));
+        }
+        if (counters[symbolId]++ % n == 0) {
+            counters[symbolId] = 1;
+            return true;
+        }
+        return false;
+    }
+}
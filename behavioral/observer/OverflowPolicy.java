@@ -0,0 +1,17 @@
+// Decides what happens to events that arrive while the queue of an
+// asynchronous observer, or the buffer of a Flow subscriber, is full.
+//
+// - BLOCK: make the publisher wait until there is room again. Only supported
+//   by asynchronous observers, as it holds back the whole stream.
+// - DROP_NEWEST: discard the events that do not fit.
+// - DROP_OLDEST: discard the oldest pending event to make room for the new
+//   one.
+// - CONFLATE: keep only the latest pending event of each stock until the
+//   observer has caught up.
+
+public enum OverflowPolicy {
+    BLOCK,
+    DROP_NEWEST,
+    DROP_OLDEST,
+    CONFLATE
+}
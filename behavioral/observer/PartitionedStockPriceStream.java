@@ -0,0 +1,96 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Spreads the events of a stream across a number of shards by stock, so that
+// the observers of different stocks are updated on different cores. Each
+// shard has its own worker thread and its own instances of every observer,
+// created by the factory passed to addObserver(). As all events of a stock go
+// to the same shard, observers still see the prices of each stock in the
+// order in which they were published.
+//
+// The observer instances of a shard must only be read once the shard has
+// caught up, either after flush() or after the stream is closed. Results for
+// one stock can then be read from the instance of its shard, while results
+// across stocks are obtained by merging the instances of all shards.
+// Publishing to and flushing a shard whose worker thread has stopped, for
+// example after the stream was closed, throws an IllegalStateException.
+// Publishing waits while the queue of the shard is full, and returns false
+// without publishing the event if the caller is interrupted meanwhile.
+
+public class PartitionedStockPriceStream implements AutoCloseable {
+
+    private final StockPriceShard[] shards;
+
+    public PartitionedStockPriceStream(int shardCount, int queueCapacity,
+                                       ThreadFactory threadFactory) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException(
+                "Invalid shard count: " + shardCount);
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException(
+                "Invalid queue capacity: " + queueCapacity);
+        }
+        this.shards = new StockPriceShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new StockPriceShard(queueCapacity, threadFactory);
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    // Returns -1 for a stock code that has never been published, as it has
+    // no symbol id yet and therefore no shard either.
+    public int getShard(String stockCode) {
+        int symbolId = SymbolDictionary.getInstance().lookup(stockCode);
+        return symbolId < 0 ? -1 : shardOf(symbolId);
+    }
+
+    public <T extends StockPriceObserver> List<T> addObserver(
+            Function<StockPriceStream, T> factory) {
+        List<T> observers = new ArrayList<>(shards.length);
+        for (StockPriceShard shard : shards) {
+            observers.add(factory.apply(shard.getStream()));
+        }
+        return observers;
+    }
+
+    public int getQueueDepth(int shard) {
+        return shards[shard].getQueueDepth();
+    }
+
+    public boolean publish(StockPriceEvent event) {
+        return shards[shardOf(event.getSymbolId())].publish(event);
+    }
+
+    public void flush() {
+        flush(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    // Returns false if the shards did not catch up within the timeout.
+    public boolean flush(long timeout, TimeUnit unit) {
+        long start = System.nanoTime();
+        for (StockPriceShard shard : shards) {
+            if (!shard.flush(start, timeout, unit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        for (StockPriceShard shard : shards) {
+            shard.close();
+        }
+    }
+
+    private int shardOf(int symbolId) {
+        return symbolId % shards.length;
+    }
+}
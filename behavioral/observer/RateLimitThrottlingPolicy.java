@@ -0,0 +1,49 @@
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+public class RateLimitThrottlingPolicy implements ThrottlingPolicy {
+
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private long[] lastAccepted = newTimes(64);
+    private final long intervalNanos;
+    private final LongSupplier clock;
+
+    public RateLimitThrottlingPolicy(double maxUpdatesPerSecond,
+                                     LongSupplier clock) {
+        if (maxUpdatesPerSecond <= 0) {
+            throw new IllegalArgumentException(
+                "Invalid rate: " + maxUpdatesPerSecond);
+        }
+        this.intervalNanos = (long) (1_000_000_000L / maxUpdatesPerSecond);
+        this.clock = clock;
+    }
+
+    public RateLimitThrottlingPolicy(double maxUpdatesPerSecond) {
+        this(maxUpdatesPerSecond, System::nanoTime);
+    }
+
+    @Override
+    public boolean accept(StockPriceEvent event) {
+        long now = clock.getAsLong();
+        int symbolId = event.getSymbolId();
+        if (symbolId >= lastAccepted.length) {
+            int length = lastAccepted.length;
+            lastAccepted = Arrays.copyOf(lastAccepted,
+                Math.max(symbolId + 1, length * 2));
+            Arrays.fill(lastAccepted, length, lastAccepted.length, NEVER);
+        }
+        long last = lastAccepted[symbolId];
+        if (last == NEVER || now - last >= intervalNanos) {
+            lastAccepted[symbolId] = now;
+            return true;
+        }
+        return false;
+    }
+
+    private static long[] newTimes(int capacity) {
+        long[] times = new long[capacity];
+        Arrays.fill(times, NEVER);
+        return times;
+    }
+}
@@ -0,0 +1,48 @@
+// The reusable event of a StockPriceStream, through which it publishes the
+// ticks of a BinaryTickDecoder. It is only ever modified by the stream while
+// it holds its publish lock, and retain() returns an immutable copy.
+
+final class ReusableStockPriceEvent extends StockPriceEvent {
+
+    private String stockCode;
+    private int symbolId = -1;
+    private double stockPrice;
+    private long quantity;
+
+    ReusableStockPriceEvent() {
+        super(null, -1, 0, 0);
+    }
+
+    @Override
+    public String getStockCode() {
+        return this.stockCode;
+    }
+
+    @Override
+    public int getSymbolId() {
+        return this.symbolId;
+    }
+
+    @Override
+    public double getStockPrice() {
+        return this.stockPrice;
+    }
+
+    @Override
+    public long getQuantity() {
+        return this.quantity;
+    }
+
+    void set(String stockCode, int symbolId, double stockPrice,
+             long quantity) {
+        this.stockCode = stockCode;
+        this.symbolId = symbolId;
+        this.stockPrice = stockPrice;
+        this.quantity = quantity;
+    }
+
+    @Override
+    StockPriceEvent retain() {
+        return new StockPriceEvent(stockCode, symbolId, stockPrice, quantity);
+    }
+}
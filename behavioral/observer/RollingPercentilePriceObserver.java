@@ -0,0 +1,32 @@
+import java.util.Arrays;
+
+public class RollingPercentilePriceObserver implements StockPriceObserver {
+
+    private final int size;
+    private RollingPercentiles[] windows = new RollingPercentiles[64];
+
+    public RollingPercentilePriceObserver(StockPriceStream stream, int size) {
+        this.size = size;
+        stream.addObserver(this);
+    }
+
+    public void update(StockPriceEvent event) {
+        int id = event.getSymbolId();
+        if (id >= windows.length) {
+            windows = Arrays.copyOf(windows,
+                Math.max(id + 1, windows.length * 2));
+        }
+        if (windows[id] == null) {
+            windows[id] = new RollingPercentiles(size);
+        }
+        windows[id].add(event.getStockPrice());
+    }
+
+    public Double getPercentile(String stockCode, double percentile) {
+        int id = SymbolDictionary.getInstance().lookup(stockCode);
+        if (id < 0 || id >= windows.length || windows[id] == null) {
+            return null;
+        }
+        return windows[id].percentile(percentile);
+    }
+}
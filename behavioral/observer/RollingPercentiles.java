@@ -0,0 +1,170 @@
+import java.util.NoSuchElementException;
+
+// Keeps the last N prices of a stock ordered in a treap, a binary search tree
+// balanced by random node priorities. Each node records the size of its
+// subtree, which allows the k-th smallest price to be found by a single walk
+// from the root. The nodes live in arrays indexed by their slot in the ring of
+// the last N prices, so that the price leaving the window is removed from the
+// tree by its slot and no objects are allocated after construction. Adding a
+// price and querying a percentile both take O(log N) expected time.
+
+public class RollingPercentiles {
+
+    private static final int NIL = -1;
+
+    private final double[] prices;
+    private final long[] sequences;
+    private final int[] priorities;
+    private final int[] left;
+    private final int[] right;
+    private final int[] sizes;
+    private int root = NIL;
+    private int count = 0;
+    private int next = 0;
+    private long sequence = 0;
+
+    public RollingPercentiles(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+        prices = new double[size];
+        sequences = new long[size];
+        priorities = new int[size];
+        left = new int[size];
+        right = new int[size];
+        sizes = new int[size];
+
+        int seed = 0x2545F491;
+        for (int i = 0; i < size; i++) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            priorities[i] = seed;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void add(double price) {
+        int node = next;
+        if (count == prices.length) {
+            root = delete(root, node);
+        } else {
+            count++;
+        }
+        prices[node] = price;
+        sequences[node] = sequence++;
+        left[node] = NIL;
+        right[node] = NIL;
+        sizes[node] = 1;
+        root = insert(root, node);
+        next = next == prices.length - 1 ? 0 : next + 1;
+    }
+
+    // Nearest-rank percentile, for percentiles greater than 0 and up to 100.
+    public double percentile(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException(
+                "Invalid percentile: " + percentile);
+        }
+        if (count == 0) {
+            throw new NoSuchElementException();
+        }
+        int rank = (int) Math.ceil(percentile / 100 * count) - 1;
+        int node = root;
+        while (true) {
+            int leftSize = size(left[node]);
+            if (rank < leftSize) {
+                node = left[node];
+            } else if (rank == leftSize) {
+                return prices[node];
+            } else {
+                rank -= leftSize + 1;
+                node = right[node];
+            }
+        }
+    }
+
+    private int insert(int tree, int node) {
+        if (tree == NIL) {
+            return node;
+        }
+        if (less(node, tree)) {
+            left[tree] = insert(left[tree], node);
+            if (priorities[left[tree]] > priorities[tree]) {
+                tree = rotateRight(tree);
+            }
+        } else {
+            right[tree] = insert(right[tree], node);
+            if (priorities[right[tree]] > priorities[tree]) {
+                tree = rotateLeft(tree);
+            }
+        }
+        resize(tree);
+        return tree;
+    }
+
+    private int delete(int tree, int node) {
+        if (tree == node) {
+            return merge(left[tree], right[tree]);
+        }
+        if (less(node, tree)) {
+            left[tree] = delete(left[tree], node);
+        } else {
+            right[tree] = delete(right[tree], node);
+        }
+        resize(tree);
+        return tree;
+    }
+
+    private int merge(int first, int second) {
+        if (first == NIL) {
+            return second;
+        }
+        if (second == NIL) {
+            return first;
+        }
+        if (priorities[first] > priorities[second]) {
+            right[first] = merge(right[first], second);
+            resize(first);
+            return first;
+        }
+        left[second] = merge(first, left[second]);
+        resize(second);
+        return second;
+    }
+
+    private int rotateRight(int tree) {
+        int pivot = left[tree];
+        left[tree] = right[pivot];
+        right[pivot] = tree;
+        resize(tree);
+        resize(pivot);
+        return pivot;
+    }
+
+    private int rotateLeft(int tree) {
+        int pivot = right[tree];
+        right[tree] = left[pivot];
+        left[pivot] = tree;
+        resize(tree);
+        resize(pivot);
+        return pivot;
+    }
+
+    private boolean less(int first, int second) {
+        return prices[first] < prices[second] ||
+               (prices[first] == prices[second] &&
+                sequences[first] < sequences[second]);
+    }
+
+    private void resize(int tree) {
+        sizes[tree] = 1 + size(left[tree]) + size(right[tree]);
+    }
+
+    private int size(int tree) {
+        return tree == NIL ? 0 : sizes[tree];
+    }
+}
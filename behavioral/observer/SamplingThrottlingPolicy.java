@@ -0,0 +1,52 @@
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Divides time into fixed buckets and accepts the first event of each stock
+// in every bucket. Unlike RateLimitThrottlingPolicy the buckets are aligned to
+// the clock, so all stocks are sampled on the same schedule.
+
+public class SamplingThrottlingPolicy implements ThrottlingPolicy {
+
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private long[] lastBuckets = newBuckets(64);
+    private final long bucketNanos;
+    private final LongSupplier clock;
+
+    public SamplingThrottlingPolicy(long interval, TimeUnit unit,
+                                    LongSupplier clock) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Invalid interval: " + interval);
+        }
+        this.bucketNanos = unit.toNanos(interval);
+        this.clock = clock;
+    }
+
+    public SamplingThrottlingPolicy(long interval, TimeUnit unit) {
+        this(interval, unit, System::nanoTime);
+    }
+
+    @Override
+    public boolean accept(StockPriceEvent event) {
+        long bucket = Math.floorDiv(clock.getAsLong(), bucketNanos);
+        int symbolId = event.getSymbolId();
+        if (symbolId >= lastBuckets.length) {
+            int length = lastBuckets.length;
+            lastBuckets = Arrays.copyOf(lastBuckets,
+                Math.max(symbolId + 1, length * 2));
+            Arrays.fill(lastBuckets, length, lastBuckets.length, NEVER);
+        }
+        if (lastBuckets[symbolId] != bucket) {
+            lastBuckets[symbolId] = bucket;
+            return true;
+        }
+        return false;
+    }
+
+    private static long[] newBuckets(int capacity) {
+        long[] buckets = new long[capacity];
+        Arrays.fill(buckets, NEVER);
+        return buckets;
+    }
+}
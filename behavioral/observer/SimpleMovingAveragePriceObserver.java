@@ -0,0 +1,70 @@
+import java.util.Arrays;
+import java.util.Map;
+
+// Calculates the exact average of the last N prices of each stock. Every
+// stock has its own ring of prices and a running sum, which is corrected by
+// the price leaving the window on each update. The sum is recalculated from
+// the ring once per N updates, so that rounding errors cannot build up. The
+// resulting average is published to a SymbolPriceTable, so it can be read by
+// other threads while the rings and sums stay private to the writer.
+
+public class SimpleMovingAveragePriceObserver implements StockPriceObserver {
+
+    private final int size;
+    private double[][] windows = new double[64][];
+    private int[] positions = new int[64];
+    private int[] counts = new int[64];
+    private double[] sums = new double[64];
+    private final SymbolPriceTable averagePrices = new SymbolPriceTable();
+
+    public SimpleMovingAveragePriceObserver(StockPriceStream stream, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+        this.size = size;
+        stream.addObserver(this);
+    }
+
+    public void update(StockPriceEvent event) {
+        int id = event.getSymbolId();
+        if (id >= windows.length) {
+            int capacity = Math.max(id + 1, windows.length * 2);
+            windows = Arrays.copyOf(windows, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            sums = Arrays.copyOf(sums, capacity);
+        }
+        if (windows[id] == null) {
+            windows[id] = new double[size];
+        }
+
+        double[] window = windows[id];
+        int index = positions[id];
+        double price = event.getStockPrice();
+        if (counts[id] == size) {
+            sums[id] -= window[index];
+        } else {
+            counts[id]++;
+        }
+        window[index] = price;
+        sums[id] += price;
+        positions[id] = index == size - 1 ? 0 : index + 1;
+
+        if (index == size - 1) {
+            double sum = 0;
+            for (double value : window) {
+                sum += value;
+            }
+            sums[id] = sum;
+        }
+        averagePrices.set(id, sums[id] / counts[id]);
+    }
+
+    public Double getAveragePrice(String stockCode) {
+        return averagePrices.get(stockCode);
+    }
+
+    public Map<String, Double> getAveragePrices() {
+        return averagePrices.snapshot();
+    }
+}
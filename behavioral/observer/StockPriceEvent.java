@@ -1,19 +1,51 @@
-public final class StockPriceEvent {
+// Events are immutable. To let a BinaryTickDecoder publish ticks without
+// allocating, the class is sealed and permits a single package-private
+// subclass, ReusableStockPriceEvent, which the stream overwrites with every
+// decoded tick. Such an event is only valid until the observer returns, so
+// subscriptions that hand events over to another thread or keep them for
+// later take an immutable copy of it with retain().
+
+public sealed class StockPriceEvent permits ReusableStockPriceEvent {
 
     private final String stockCode;
+    private final int symbolId;
     private final double stockPrice;
+    private final long quantity;
 
     public StockPriceEvent(String stockCode, double stockPrice) {
+        this(stockCode, stockPrice, 0);
+    }
+
+    public StockPriceEvent(String stockCode, double stockPrice, long quantity) {
+        this(stockCode, SymbolDictionary.getInstance().intern(stockCode),
+             stockPrice, quantity);
+    }
+
+    StockPriceEvent(String stockCode, int symbolId, double stockPrice,
+                    long quantity) {
         this.stockCode = stockCode;
+        this.symbolId = symbolId;
         this.stockPrice = stockPrice;
+        this.quantity = quantity;
     }
 
     public String getStockCode() {
         return this.stockCode;
     }
 
+    public int getSymbolId() {
+        return this.symbolId;
+    }
+
     public double getStockPrice() {
         return this.stockPrice;
     }
-}
 
+    public long getQuantity() {
+        return this.quantity;
+    }
+
+    StockPriceEvent retain() {
+        return this;
+    }
+}
@@ -0,0 +1,312 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+// Append-only journal of StockPriceEvents kept in memory-mapped files. It is
+// registered on a stream like any other observer, and records every event it
+// receives together with a timestamp. The journal lives in a directory with
+// two kinds of files:
+//
+// - symbols.dat: the stock codes, each stored once as a two byte length
+//   followed by its UTF-8 bytes. The position of a stock code in this file is
+//   its journal id, which unlike a symbol id stays the same across restarts.
+// - ticks-NNNNNNNN.dat: segments of fixed size tick records, each holding the
+//   journal id plus one, the timestamp in milliseconds, the price and the
+//   quantity. A zero id marks the end of the journal, so a restarted process
+//   finds the end of the last segment by a binary search.
+//
+// As the records have a fixed size, the offset of an event is simply its
+// position in the journal, and the timestamps never decrease, so the first
+// event at or after a point in time is found by a binary search as well.
+// Replaying decodes the records straight from the page cache.
+
+public class StockPriceJournal implements StockPriceObserver, Closeable {
+
+    private static final int RECORD_SIZE = 28;
+    private static final int SYMBOL_OFFSET = 0;
+    private static final int TIMESTAMP_OFFSET = 4;
+    private static final int PRICE_OFFSET = 12;
+    private static final int QUANTITY_OFFSET = 20;
+    private static final String SYMBOLS_FILE = "symbols.dat";
+
+    private final SymbolDictionary dictionary = SymbolDictionary.getInstance();
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final LongSupplier clock;
+    private final FileChannel symbolsChannel;
+    private final List<FileChannel> segmentChannels = new ArrayList<>();
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private volatile String[] stockCodes = new String[64];
+    private volatile int[] symbolIds = new int[64];
+    private int[] journalIds = new int[64];
+    private int symbolCount = 0;
+    private volatile long size = 0;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private boolean closed = false;
+
+    public StockPriceJournal(Path directory, int recordsPerSegment,
+                             LongSupplier clock) throws IOException {
+        if (recordsPerSegment <= 0 ||
+            (long) recordsPerSegment * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                "Invalid segment size: " + recordsPerSegment);
+        }
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.clock = clock;
+        Arrays.fill(journalIds, -1);
+
+        Files.createDirectories(directory);
+        this.symbolsChannel = FileChannel.open(directory.resolve(SYMBOLS_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        loadSymbols();
+        loadSegments();
+    }
+
+    public StockPriceJournal(Path directory) throws IOException {
+        this(directory, 1 << 20, System::currentTimeMillis);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public void update(StockPriceEvent event) {
+        try {
+            append(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized long append(StockPriceEvent event) throws IOException {
+        ensureOpen();
+        int journalId = journalId(event);
+        long offset = size;
+        if (offset / recordsPerSegment == segments.length) {
+            addSegment(segments.length);
+        }
+        lastTimestamp = Math.max(lastTimestamp, clock.getAsLong());
+
+        ByteBuffer segment = segments[(int) (offset / recordsPerSegment)];
+        int position = (int) (offset % recordsPerSegment) * RECORD_SIZE;
+        segment.putLong(position + TIMESTAMP_OFFSET, lastTimestamp);
+        segment.putDouble(position + PRICE_OFFSET, event.getStockPrice());
+        segment.putLong(position + QUANTITY_OFFSET, event.getQuantity());
+        segment.putInt(position + SYMBOL_OFFSET, journalId + 1);
+        size = offset + 1;
+        return offset;
+    }
+
+    public long getTimestamp(long offset) {
+        if (offset < 0 || offset >= size) {
+            throw new IndexOutOfBoundsException("Invalid offset: " + offset);
+        }
+        return segments[(int) (offset / recordsPerSegment)].getLong(
+            position(offset) + TIMESTAMP_OFFSET);
+    }
+
+    // Returns the offset of the first event recorded at or after the given
+    // time, or the size of the journal if there is no such event.
+    public long offsetOf(long timestamp) {
+        long low = 0;
+        long high = size;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (getTimestamp(middle) < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Replays the events from the given offset up to the end of the journal
+    // and returns the offset following the last replayed event.
+    public long replay(long offset, StockPriceObserver observer) {
+        if (offset < 0) {
+            throw new IndexOutOfBoundsException("Invalid offset: " + offset);
+        }
+        long end = size;
+        MappedByteBuffer[] currentSegments = segments;
+        String[] currentStockCodes = stockCodes;
+        int[] currentSymbolIds = symbolIds;
+        for (long next = offset; next < end; next++) {
+            ByteBuffer segment =
+                currentSegments[(int) (next / recordsPerSegment)];
+            int position = position(next);
+            int journalId = segment.getInt(position + SYMBOL_OFFSET) - 1;
+            observer.update(new StockPriceEvent(
+                currentStockCodes[journalId], currentSymbolIds[journalId],
+                segment.getDouble(position + PRICE_OFFSET),
+                segment.getLong(position + QUANTITY_OFFSET)));
+        }
+        return Math.max(offset, end);
+    }
+
+    public long replaySince(long timestamp, StockPriceObserver observer) {
+        return replay(offsetOf(timestamp), observer);
+    }
+
+    // Replays the journal from the given offset into the observer and then
+    // registers it on the stream, without missing or repeating an event in
+    // between. Most events are replayed while the stream keeps publishing;
+    // only the last few are replayed while publishing is held back. This
+    // requires the journal to be a plain synchronous observer of the stream,
+    // as otherwise events could still be on their way to the journal.
+    public void replayAndAddObserver(StockPriceStream stream, long offset,
+                                     StockPriceObserver observer) {
+        if (!stream.isSynchronousObserver(this)) {
+            throw new IllegalStateException(
+                "Journal is not a synchronous observer of the stream");
+        }
+        long next = replay(offset, observer);
+        stream.addObserverAfter(() -> replay(next, observer), observer);
+    }
+
+    public synchronized void force() throws IOException {
+        ensureOpen();
+        symbolsChannel.force(true);
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+            for (FileChannel channel : segmentChannels) {
+                channel.close();
+            }
+            symbolsChannel.force(true);
+            symbolsChannel.close();
+        }
+    }
+
+    private int journalId(StockPriceEvent event) throws IOException {
+        int symbolId = event.getSymbolId();
+        if (symbolId < journalIds.length && journalIds[symbolId] >= 0) {
+            return journalIds[symbolId];
+        }
+        String stockCode = event.getStockCode();
+        byte[] bytes = stockCode.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(2 + bytes.length);
+        record.putShort((short) bytes.length).put(bytes).flip();
+        while (record.hasRemaining()) {
+            symbolsChannel.write(record, symbolsChannel.size());
+        }
+        return register(stockCode, symbolId);
+    }
+
+    private int register(String stockCode, int symbolId) {
+        if (symbolCount == stockCodes.length) {
+            stockCodes = Arrays.copyOf(stockCodes, symbolCount * 2);
+            symbolIds = Arrays.copyOf(symbolIds, symbolCount * 2);
+        }
+        if (symbolId >= journalIds.length) {
+            int length = journalIds.length;
+            journalIds = Arrays.copyOf(journalIds,
+                Math.max(symbolId + 1, length * 2));
+            Arrays.fill(journalIds, length, journalIds.length, -1);
+        }
+        stockCodes[symbolCount] = stockCode;
+        symbolIds[symbolCount] = symbolId;
+        journalIds[symbolId] = symbolCount;
+        return symbolCount++;
+    }
+
+    private void loadSymbols() throws IOException {
+        ByteBuffer symbols = ByteBuffer.allocate((int) symbolsChannel.size());
+        while (symbols.hasRemaining()) {
+            symbolsChannel.read(symbols, symbols.position());
+        }
+        symbols.flip();
+        while (symbols.remaining() >= 2) {
+            int length = symbols.getShort(symbols.position()) & 0xFFFF;
+            if (symbols.remaining() < 2 + length) {
+                break;
+            }
+            byte[] bytes = new byte[length];
+            symbols.getShort();
+            symbols.get(bytes);
+            String stockCode = new String(bytes, StandardCharsets.UTF_8);
+            register(stockCode, dictionary.intern(stockCode));
+        }
+        // A record torn by a crash while it was being appended is discarded,
+        // as no tick can refer to it yet.
+        if (symbols.hasRemaining()) {
+            symbolsChannel.truncate(symbols.position());
+        }
+    }
+
+    private void loadSegments() throws IOException {
+        while (Files.exists(segmentFile(segments.length))) {
+            addSegment(segments.length);
+        }
+        if (segments.length == 0) {
+            return;
+        }
+        ByteBuffer last = segments[segments.length - 1];
+        int low = 0;
+        int high = recordsPerSegment;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (last.getInt(middle * RECORD_SIZE + SYMBOL_OFFSET) != 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        size = (long) (segments.length - 1) * recordsPerSegment + low;
+        if (size > 0) {
+            lastTimestamp = getTimestamp(size - 1);
+        }
+    }
+
+    private void addSegment(int index) throws IOException {
+        Path file = segmentFile(index);
+        long segmentSize = (long) recordsPerSegment * RECORD_SIZE;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() != 0 && channel.size() != segmentSize) {
+            channel.close();
+            throw new IOException("Incompatible journal segment: " + file);
+        }
+        segmentChannels.add(channel);
+        MappedByteBuffer[] updated = Arrays.copyOf(segments, index + 1);
+        updated[index] =
+            channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segments = updated;
+    }
+
+    private Path segmentFile(int index) {
+        return directory.resolve(String.format("ticks-%08d.dat", index));
+    }
+
+    private int position(long offset) {
+        return (int) (offset % recordsPerSegment) * RECORD_SIZE;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+    }
+}
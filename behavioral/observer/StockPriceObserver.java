@@ -1,5 +1,5 @@
 public interface StockPriceObserver {
 
-    void update();
+    void update(StockPriceEvent event);
 }
 
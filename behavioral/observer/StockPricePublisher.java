@@ -0,0 +1,92 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+
+// Exposes a StockPriceStream as a Flow.Publisher, so that reactive pipelines
+// can consume its events at their own pace. Every subscriber gets its own
+// bounded buffer, which fills up while the subscriber has not requested more
+// events. Once the buffer is full, the overflow policy either conflates the
+// further events by stock or drops the newest or the oldest ones, so the
+// stream is never held back by a subscriber. Events are delivered on the
+// given executor. Subscribers that subscribe after the publisher was closed
+// are completed straight away.
+
+public class StockPricePublisher implements Flow.Publisher<StockPriceEvent>,
+                                            AutoCloseable {
+
+    private final StockPriceStream stream;
+    private final int bufferCapacity;
+    private final OverflowPolicy policy;
+    private final Executor executor;
+    private final List<FlowSubscription> subscriptions =
+        new CopyOnWriteArrayList<>();
+    private boolean closed = false;
+
+    public StockPricePublisher(StockPriceStream stream, int bufferCapacity,
+                               OverflowPolicy policy, Executor executor) {
+        if (bufferCapacity <= 0) {
+            throw new IllegalArgumentException(
+                "Invalid buffer capacity: " + bufferCapacity);
+        }
+        if (policy == OverflowPolicy.BLOCK) {
+            throw new IllegalArgumentException(
+                "Unsupported overflow policy: " + policy);
+        }
+        this.stream = stream;
+        this.bufferCapacity = bufferCapacity;
+        this.policy = policy;
+        this.executor = executor;
+    }
+
+    public StockPricePublisher(StockPriceStream stream, int bufferCapacity,
+                               OverflowPolicy policy) {
+        this(stream, bufferCapacity, policy, ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public synchronized void subscribe(
+            Flow.Subscriber<? super StockPriceEvent> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException();
+        }
+        FlowSubscription subscription = new FlowSubscription(
+            subscriber, this, executor, bufferCapacity, policy);
+        if (closed) {
+            subscription.complete();
+        } else {
+            subscriptions.add(subscription);
+            stream.addObserver(subscription);
+            subscription.signal();
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    // Returns the number of events dropped for the current subscribers.
+    public long getDroppedCount() {
+        long droppedCount = 0;
+        for (FlowSubscription subscription : subscriptions) {
+            droppedCount += subscription.getDroppedCount();
+        }
+        return droppedCount;
+    }
+
+    // Completes every subscriber once it has received the events that are
+    // already buffered for it.
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (FlowSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    void remove(FlowSubscription subscription) {
+        subscriptions.remove(subscription);
+        stream.removeObserver(subscription);
+    }
+}
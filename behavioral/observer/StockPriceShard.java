@@ -0,0 +1,78 @@
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One partition of a PartitionedStockPriceStream. Events are queued to the
+// shard's worker thread, which publishes them to a synchronous stream of its
+// own, so the observers of a shard are only ever called from that thread.
+// A shard must not lose events, so its queue blocks the publisher when full.
+// The shard counts the events its worker has queued and processed, which lets
+// callers wait until everything published so far has been handled. Waiting
+// fails instead of spinning forever once the worker has stopped, and
+// publishing fails as well, rather than counting an event that was dropped.
+// A publisher interrupted while waiting for room in the queue gets false
+// back, with its interrupt flag still set, and the event is not counted.
+
+class StockPriceShard implements StockPriceObserver, AutoCloseable {
+
+    private final StockPriceStream stream = new StockPriceStream();
+    private final AtomicLong published = new AtomicLong();
+    private volatile long processed = 0;
+    private final AsyncSubscription subscription;
+
+    StockPriceShard(int queueCapacity, ThreadFactory threadFactory) {
+        this.subscription =
+            new AsyncSubscription(this, queueCapacity, OverflowPolicy.BLOCK,
+                                  threadFactory);
+    }
+
+    StockPriceStream getStream() {
+        return stream;
+    }
+
+    int getQueueDepth() {
+        return subscription.getQueueDepth();
+    }
+
+    boolean publish(StockPriceEvent event) {
+        if (subscription.enqueue(event)) {
+            published.incrementAndGet();
+            return true;
+        }
+        if (!subscription.isAlive()) {
+            throw new IllegalStateException("Shard has stopped");
+        }
+        return false;
+    }
+
+    public void update(StockPriceEvent event) {
+        try {
+            stream.publish(event);
+        } finally {
+            processed = processed + 1;
+        }
+    }
+
+    // Waits until every event queued so far has been processed, and returns
+    // false if that takes longer than the timeout, measured from start.
+    boolean flush(long start, long timeout, TimeUnit unit) {
+        long timeoutNanos = unit.toNanos(timeout);
+        long target = published.get();
+        while (processed < target) {
+            if (!subscription.isAlive() && processed < target) {
+                throw new IllegalStateException("Shard has stopped");
+            }
+            if (System.nanoTime() - start >= timeoutNanos) {
+                return false;
+            }
+            Thread.yield();
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        subscription.close();
+        stream.close();
+    }
+}
@@ -1,32 +1,375 @@
+import java.lang.ref.ReferenceQueue;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
-public class StockPriceStream {
+// Keeps, next to the list of all subscriptions, an index from symbol id to
+// the subscriptions interested in that stock. The entry of a stock is built
+// the first time one of its events is published and is then reused, so a
+// publish only touches the observers of that stock. Adding or removing an
+// observer only updates the entries of the stocks it is interested in, so the
+// filters of the other observers are not evaluated again. Entries that hold
+// every subscription share the array of all subscriptions. As the publisher
+// reads the index without a lock, it is never changed in place: every change
+// is made to a copy, which then replaces the index.
+//
+// The observers of an asynchronous stream never hold back the publisher
+// unless they ask for it: when the queue of an observer is full, its overflow
+// policy drops the newest or the oldest event, conflates the events by stock,
+// or, only if BLOCK was chosen, makes the publisher wait. The policy is set
+// for the whole stream and can be overridden for each observer, and the
+// events an observer missed are counted by getDroppedCount().
+//
+// Observers registered with addWeakObserver() are only weakly referenced.
+// When one of them is garbage collected, its reference is enqueued and the
+// next publish drops its subscription, so a stream never notifies, or keeps
+// in memory, observers that nobody else uses any more.
+//
+// Ticks decoded by a BinaryTickDecoder are published through a reusable event
+// owned by the stream, which is only overwritten while the stream holds its
+// publish lock. The stream never hands that event out from getEvent(), which
+// returns an immutable copy of it instead.
+//
+// ObserverStatistics are only collected once enabled, as they cost two reads
+// of the clock per update of every observer. Enabling them applies to the
+// current and to any later observers, and disabling them discards them.
 
-    private final List<StockPriceObserver> observers = new ArrayList<>();
+public class StockPriceStream implements AutoCloseable {
+
+    private static final Subscription[][] EMPTY_INDEX = new Subscription[0][];
+
+    private final SymbolDictionary dictionary = SymbolDictionary.getInstance();
+    private final Object lock = new Object();
+    private volatile Subscription[] subscriptions = new Subscription[0];
+    private volatile Subscription[][] index = EMPTY_INDEX;
+    private final ReferenceQueue<StockPriceObserver> clearedObservers =
+        new ReferenceQueue<>();
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final ThreadFactory threadFactory;
+    private boolean statisticsEnabled = false;
+    private final ReusableStockPriceEvent tick = new ReusableStockPriceEvent();
     private StockPriceEvent event;
 
+    public StockPriceStream() {
+        this.queueCapacity = 0;
+        this.overflowPolicy = OverflowPolicy.BLOCK;
+        this.threadFactory = null;
+    }
+
+    public StockPriceStream(int queueCapacity, ThreadFactory threadFactory) {
+        this(queueCapacity, OverflowPolicy.DROP_OLDEST, threadFactory);
+    }
+
+    public StockPriceStream(int queueCapacity, OverflowPolicy overflowPolicy,
+                            ThreadFactory threadFactory) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException(
+                "Invalid queue capacity: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.threadFactory = threadFactory;
+    }
+
     public void addObserver(StockPriceObserver observer) {
-        this.observers.add(observer);
+        add(subscribe(observer));
+    }
+
+    // Synchronous streams have no queues, so there only CONFLATE makes a
+    // difference, by delivering the events on a thread of the observer's own.
+    public void addObserver(StockPriceObserver observer,
+                            OverflowPolicy policy) {
+        add(subscribe(observer, policy));
+    }
+
+    public void addObserver(StockPriceObserver observer,
+                            ThrottlingPolicy policy) {
+        add(new ThrottledSubscription(subscribe(observer), policy));
+    }
+
+    public void addObserver(StockPriceObserver observer,
+                            Set<String> stockCodes) {
+        add(new FilteredSubscription(subscribe(observer), stockCodes));
+    }
+
+    public void addWeakObserver(StockPriceObserver observer) {
+        add(new WeakSubscription(observer, clearedObservers, this::subscribe));
+    }
+
+    // Runs the action while no event is being published and then registers
+    // the observer, so that it receives exactly the events published after
+    // the action. Lets an observer catch up from a synchronous observer of
+    // this stream, such as a StockPriceJournal, without a gap.
+    public synchronized void addObserverAfter(Runnable action,
+                                              StockPriceObserver observer) {
+        action.run();
+        addObserver(observer);
+    }
+
+    public void addConflatingObserver(StockPriceObserver observer) {
+        addObserver(observer, OverflowPolicy.CONFLATE);
     }
 
     public void removeObserver(StockPriceObserver observer) {
-        this.observers.remove(observer);
+        Subscription subscription = remove(observer);
+        if (subscription != null) {
+            subscription.close();
+        }
+    }
+
+    public int getObserverCount() {
+        int count = 0;
+        for (Subscription subscription : subscriptions) {
+            if (subscription.getObserver() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void setStatisticsEnabled(boolean enabled) {
+        synchronized (lock) {
+            statisticsEnabled = enabled;
+            for (Subscription subscription : subscriptions) {
+                if (enabled) {
+                    enableStatistics(subscription);
+                } else {
+                    subscription.disableStatistics();
+                }
+            }
+        }
+    }
+
+    // Returns null if statistics are not enabled.
+    public ObserverStatistics getStatistics(StockPriceObserver observer) {
+        Subscription subscription = find(observer);
+        return subscription == null ? null : subscription.getStatistics();
+    }
+
+    public List<ObserverStatistics> getStatistics() {
+        List<ObserverStatistics> statistics = new ArrayList<>();
+        for (Subscription subscription : subscriptions) {
+            if (subscription.getStatistics() != null) {
+                statistics.add(subscription.getStatistics());
+            }
+        }
+        return statistics;
+    }
+
+    boolean isSynchronousObserver(StockPriceObserver observer) {
+        return find(observer) instanceof SyncSubscription;
+    }
+
+    public int getQueueDepth(StockPriceObserver observer) {
+        Subscription subscription = find(observer);
+        return subscription == null ? 0 : subscription.getQueueDepth();
+    }
+
+    public long getDroppedCount(StockPriceObserver observer) {
+        Subscription subscription = find(observer);
+        return subscription == null ? 0 : subscription.getDroppedCount();
     }
 
     public synchronized void publish(StockPriceEvent event) {
         this.event = event;
-        notifyObservers();
+        if (clearedObservers.poll() != null) {
+            purge();
+        }
+        notifyObservers(event);
     }
 
-    public StockPriceEvent getEvent() {
+    synchronized void publish(String stockCode, int symbolId,
+                              double stockPrice, long quantity) {
+        tick.set(stockCode, symbolId, stockPrice, quantity);
+        this.event = null;
+        if (clearedObservers.poll() != null) {
+            purge();
+        }
+        notifyObservers(tick);
+    }
+
+    public synchronized StockPriceEvent getEvent() {
+        if (event == null && tick.getStockCode() != null) {
+            event = tick.retain();
+        }
         return event;
     }
 
-    private void notifyObservers() {
-        for (StockPriceObserver observer : observers) {
-            observer.update();
+    @Override
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
         }
     }
-}
 
+    private void notifyObservers(StockPriceEvent event) {
+        for (Subscription subscription : subscribers(event)) {
+            subscription.publish(event);
+        }
+    }
+
+    private Subscription[] subscribers(StockPriceEvent event) {
+        int symbolId = event.getSymbolId();
+        Subscription[][] current = index;
+        if (symbolId < current.length && current[symbolId] != null) {
+            return current[symbolId];
+        }
+        synchronized (lock) {
+            current = index;
+            if (symbolId < current.length && current[symbolId] != null) {
+                return current[symbolId];
+            }
+            Subscription[][] entries = symbolId < current.length
+                ? current.clone()
+                : Arrays.copyOf(current,
+                      Math.max(symbolId + 1, current.length * 2));
+            Subscription[] all = subscriptions;
+            Subscription[] subscribers = Arrays.stream(all)
+                .filter(subscription ->
+                    interested(subscription, event.getStockCode()))
+                .toArray(Subscription[]::new);
+            if (subscribers.length == all.length) {
+                subscribers = all;
+            }
+            entries[symbolId] = subscribers;
+            index = entries;
+            return subscribers;
+        }
+    }
+
+    private static boolean interested(Subscription subscription,
+                                      String stockCode) {
+        return !(subscription instanceof FilteredSubscription) ||
+               ((FilteredSubscription) subscription).matches(stockCode);
+    }
+
+    private Subscription subscribe(StockPriceObserver observer) {
+        return subscribe(observer, overflowPolicy);
+    }
+
+    private Subscription subscribe(StockPriceObserver observer,
+                                   OverflowPolicy policy) {
+        if (policy == OverflowPolicy.CONFLATE) {
+            return new ConflatingSubscription(observer,
+                threadFactory == null ? Executors.defaultThreadFactory()
+                                      : threadFactory);
+        }
+        if (threadFactory == null) {
+            return new SyncSubscription(observer);
+        }
+        return new AsyncSubscription(observer, queueCapacity, policy,
+                                     threadFactory);
+    }
+
+    private static void enableStatistics(Subscription subscription) {
+        StockPriceObserver observer = subscription.getObserver();
+        if (observer != null) {
+            subscription.enableStatistics(observer.getClass().getName());
+        }
+    }
+
+    private void add(Subscription subscription) {
+        synchronized (lock) {
+            if (statisticsEnabled) {
+                enableStatistics(subscription);
+            }
+            Subscription[] current = subscriptions;
+            Subscription[] updated =
+                Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = subscription;
+            subscriptions = updated;
+
+            Subscription[][] entries = index.clone();
+            for (int symbolId = 0; symbolId < entries.length; symbolId++) {
+                Subscription[] entry = entries[symbolId];
+                if (entry != null && interested(subscription,
+                        dictionary.getStockCode(symbolId))) {
+                    if (entry == current) {
+                        entries[symbolId] = updated;
+                    } else {
+                        entry = Arrays.copyOf(entry, entry.length + 1);
+                        entry[entry.length - 1] = subscription;
+                        entries[symbolId] = entry;
+                    }
+                }
+            }
+            index = entries;
+        }
+    }
+
+    private Subscription remove(StockPriceObserver observer) {
+        synchronized (lock) {
+            Subscription[] current = subscriptions;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].getObserver() == observer) {
+                    Subscription[] updated =
+                        new Subscription[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i,
+                                     current.length - i - 1);
+                    subscriptions = updated;
+                    unindex(current, updated, List.of(current[i]));
+                    return current[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    private void purge() {
+        while (clearedObservers.poll() != null) {
+            // Drain the queue, the subscriptions are found below.
+        }
+        List<Subscription> purged = new ArrayList<>();
+        synchronized (lock) {
+            List<Subscription> live = new ArrayList<>();
+            for (Subscription subscription : subscriptions) {
+                if (subscription.getObserver() != null) {
+                    live.add(subscription);
+                } else {
+                    purged.add(subscription);
+                }
+            }
+            Subscription[] current = subscriptions;
+            subscriptions = live.toArray(new Subscription[0]);
+            unindex(current, subscriptions, purged);
+        }
+        for (Subscription subscription : purged) {
+            subscription.close();
+        }
+    }
+
+    // Removes subscriptions from the entries of the index, which now refer to
+    // the updated array where they previously referred to all subscriptions.
+    private void unindex(Subscription[] current, Subscription[] updated,
+                         List<Subscription> removed) {
+        Subscription[][] entries = index.clone();
+        for (int symbolId = 0; symbolId < entries.length; symbolId++) {
+            Subscription[] entry = entries[symbolId];
+            if (entry == current) {
+                entries[symbolId] = updated;
+            } else if (entry != null) {
+                Subscription[] remaining = Arrays.stream(entry)
+                    .filter(subscription -> !removed.contains(subscription))
+                    .toArray(Subscription[]::new);
+                if (remaining.length < entry.length) {
+                    entries[symbolId] = remaining;
+                }
+            }
+        }
+        index = entries;
+    }
+
+    private Subscription find(StockPriceObserver observer) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.getObserver() == observer) {
+                return subscription;
+            }
+        }
+        return null;
+    }
+}
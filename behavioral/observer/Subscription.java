@@ -0,0 +1,67 @@
+// Base class of the subscriptions through which a stream delivers events to
+// its observers. Statistics are only collected once enabled, so that
+// subscriptions of streams without statistics do not even read the clock.
+// Decorating subscriptions delegate their statistics to the subscription
+// they wrap, which is the one that actually delivers the events.
+
+abstract class Subscription {
+
+    private final StockPriceObserver observer;
+    private volatile ObserverStatistics statistics;
+
+    Subscription(StockPriceObserver observer) {
+        this.observer = observer;
+    }
+
+    StockPriceObserver getObserver() {
+        return observer;
+    }
+
+    // Returns null unless statistics are enabled.
+    ObserverStatistics getStatistics() {
+        return statistics;
+    }
+
+    void enableStatistics(String observerName) {
+        if (statistics == null) {
+            statistics = new ObserverStatistics(observerName);
+            ObserverStatisticsEvent.register(statistics);
+        }
+    }
+
+    void disableStatistics() {
+        ObserverStatistics current = statistics;
+        if (current != null) {
+            statistics = null;
+            ObserverStatisticsEvent.unregister(current);
+        }
+    }
+
+    int getQueueDepth() {
+        return 0;
+    }
+
+    // Returns the number of events that were dropped, or replaced by a later
+    // event of the same stock, instead of being delivered to the observer.
+    long getDroppedCount() {
+        return 0;
+    }
+
+    abstract void publish(StockPriceEvent event);
+
+    // Stops reporting the statistics to Java Flight Recorder, while keeping
+    // them available from getStatistics().
+    void close() {
+        ObserverStatistics current = statistics;
+        if (current != null) {
+            ObserverStatisticsEvent.unregister(current);
+        }
+    }
+
+    // Reports an exception thrown by an observer on a worker thread to the
+    // uncaught exception handler of that thread, without stopping it.
+    static void reportFailure(RuntimeException e) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+}
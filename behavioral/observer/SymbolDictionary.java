@@ -0,0 +1,53 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Maps every stock code to a dense integer id the first time it is seen, so
+// that per-stock state can be kept in arrays indexed by id rather than in
+// maps keyed by stock code. Lookups of known stock codes do not allocate.
+
+public final class SymbolDictionary {
+
+    private static final SymbolDictionary INSTANCE = new SymbolDictionary();
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] stockCodes = new String[1024];
+    private int size = 0;
+
+    private SymbolDictionary() {}
+
+    public static SymbolDictionary getInstance() {
+        return INSTANCE;
+    }
+
+    public int intern(String stockCode) {
+        Integer id = ids.get(stockCode);
+        return id != null ? id : register(stockCode);
+    }
+
+    public int lookup(String stockCode) {
+        Integer id = ids.get(stockCode);
+        return id != null ? id : -1;
+    }
+
+    public String getStockCode(int symbolId) {
+        return stockCodes[symbolId];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int register(String stockCode) {
+        Integer id = ids.get(stockCode);
+        if (id != null) {
+            return id;
+        }
+        if (size == stockCodes.length) {
+            stockCodes = Arrays.copyOf(stockCodes, size * 2);
+        }
+        stockCodes[size] = stockCode;
+        ids.put(stockCode, size);
+        return size++;
+    }
+}
@@ -0,0 +1,88 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+
+// Holds one price per stock in an array indexed by the symbol ids of the
+// SymbolDictionary. Stocks without a price are marked with NaN. The array
+// only grows when a new stock appears, so updating a known stock does not
+// allocate. Tables filled by different partitions of a stream can be merged,
+// combining the prices of stocks present in both.
+//
+// A table has a single writer, the thread delivering events to its observer,
+// but can be read by any number of threads at the same time. Prices are
+// stored with release and loaded with acquire semantics, and a grown array
+// is published through a volatile field, so a reader always sees a complete
+// price that was set by the writer, without either side taking a lock.
+
+public class SymbolPriceTable {
+
+    private static final VarHandle PRICES =
+        MethodHandles.arrayElementVarHandle(double[].class);
+
+    private final SymbolDictionary dictionary = SymbolDictionary.getInstance();
+    private volatile double[] prices = newPrices(0, 64);
+
+    public double get(int symbolId) {
+        double[] current = prices;
+        return symbolId < current.length
+            ? (double) PRICES.getAcquire(current, symbolId) : Double.NaN;
+    }
+
+    public Double get(String stockCode) {
+        int symbolId = dictionary.lookup(stockCode);
+        if (symbolId < 0) {
+            return null;
+        }
+        double price = get(symbolId);
+        return Double.isNaN(price) ? null : price;
+    }
+
+    public void set(int symbolId, double price) {
+        double[] current = prices;
+        if (symbolId >= current.length) {
+            double[] newPrices = newPrices(current.length,
+                Math.max(symbolId + 1, current.length * 2));
+            System.arraycopy(current, 0, newPrices, 0, current.length);
+            prices = newPrices;
+            current = newPrices;
+        }
+        PRICES.setRelease(current, symbolId, price);
+    }
+
+    public void merge(SymbolPriceTable other,
+                      DoubleBinaryOperator combiner) {
+        for (int symbolId = other.prices.length - 1; symbolId >= 0;
+                symbolId--) {
+            double otherPrice = other.get(symbolId);
+            if (!Double.isNaN(otherPrice)) {
+                double price = get(symbolId);
+                set(symbolId, Double.isNaN(price) ? otherPrice
+                              : combiner.applyAsDouble(price, otherPrice));
+            }
+        }
+    }
+
+    // Returns the prices of all stocks by stock code, in the order of their
+    // symbol ids. Each price is one the writer has set, but prices updated
+    // while the snapshot is taken may be older than others.
+    public Map<String, Double> snapshot() {
+        double[] current = prices;
+        Map<String, Double> snapshot = new LinkedHashMap<>();
+        for (int symbolId = 0; symbolId < current.length; symbolId++) {
+            double price = (double) PRICES.getAcquire(current, symbolId);
+            if (!Double.isNaN(price)) {
+                snapshot.put(dictionary.getStockCode(symbolId), price);
+            }
+        }
+        return snapshot;
+    }
+
+    private static double[] newPrices(int from, int capacity) {
+        double[] prices = new double[capacity];
+        Arrays.fill(prices, from, capacity, Double.NaN);
+        return prices;
+    }
+}
@@ -0,0 +1,18 @@
+class SyncSubscription extends Subscription {
+
+    SyncSubscription(StockPriceObserver observer) {
+        super(observer);
+    }
+
+    @Override
+    void publish(StockPriceEvent event) {
+        ObserverStatistics statistics = getStatistics();
+        if (statistics == null) {
+            getObserver().update(event);
+        } else {
+            long start = System.nanoTime();
+            getObserver().update(event);
+            statistics.recordUpdate(start, System.nanoTime());
+        }
+    }
+}
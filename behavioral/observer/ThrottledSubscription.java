@@ -0,0 +1,48 @@
+class ThrottledSubscription extends Subscription {
+
+    private final Subscription subscription;
+    private final ThrottlingPolicy policy;
+
+    ThrottledSubscription(Subscription subscription, ThrottlingPolicy policy) {
+        super(subscription.getObserver());
+        this.subscription = subscription;
+        this.policy = policy;
+    }
+
+    @Override
+    ObserverStatistics getStatistics() {
+        return subscription.getStatistics();
+    }
+
+    @Override
+    void enableStatistics(String observerName) {
+        subscription.enableStatistics(observerName);
+    }
+
+    @Override
+    void disableStatistics() {
+        subscription.disableStatistics();
+    }
+
+    @Override
+    int getQueueDepth() {
+        return subscription.getQueueDepth();
+    }
+
+    @Override
+    long getDroppedCount() {
+        return subscription.getDroppedCount();
+    }
+
+    @Override
+    void publish(StockPriceEvent event) {
+        if (policy.accept(event)) {
+            subscription.publish(event);
+        }
+    }
+
+    @Override
+    void close() {
+        subscription.close();
+    }
+}
@@ -0,0 +1,4 @@
+public interface ThrottlingPolicy {
+
+    boolean accept(StockPriceEvent event);
+}
@@ -0,0 +1,52 @@
+import java.util.Map;
+
+// Calculates the volume weighted average price of each stock from the total
+// notional and quantity traded. The writer publishes the resulting price to
+// a table of its own after every trade, so a reader never combines the
+// notional of one trade with the quantity of another.
+
+public class VwapObserver implements StockPriceObserver {
+
+    private final SymbolPriceTable notionals = new SymbolPriceTable();
+    private final SymbolPriceTable quantities = new SymbolPriceTable();
+    private final SymbolPriceTable vwaps = new SymbolPriceTable();
+
+    public VwapObserver(StockPriceStream stream) {
+        stream.addObserver(this);
+    }
+
+    public void update(StockPriceEvent event) {
+        if (event.getQuantity() <= 0) {
+            return;
+        }
+        int id = event.getSymbolId();
+        double notional = notionals.get(id);
+        double quantity = quantities.get(id);
+        double tradeNotional = event.getStockPrice() * event.getQuantity();
+        notionals.set(id, Double.isNaN(notional) ?
+            tradeNotional : notional + tradeNotional);
+        quantities.set(id, Double.isNaN(quantity) ?
+            event.getQuantity() : quantity + event.getQuantity());
+        vwaps.set(id, notionals.get(id) / quantities.get(id));
+    }
+
+    public void merge(VwapObserver other) {
+        notionals.merge(other.notionals, Double::sum);
+        quantities.merge(other.quantities, Double::sum);
+        int size = SymbolDictionary.getInstance().size();
+        for (int id = 0; id < size; id++) {
+            double quantity = quantities.get(id);
+            if (!Double.isNaN(quantity)) {
+                vwaps.set(id, notionals.get(id) / quantity);
+            }
+        }
+    }
+
+    public Double getVwap(String stockCode) {
+        return vwaps.get(stockCode);
+    }
+
+    public Map<String, Double> getVwaps() {
+        return vwaps.snapshot();
+    }
+}
@@ -0,0 +1,70 @@
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.function.Function;
+
+// Holds its observer through a weak reference, so registering an observer
+// does not keep it alive. The subscription delivering the events, which may
+// be asynchronous, is given a forwarding observer that only refers back to
+// this subscription. Once the observer has been garbage collected its
+// reference is enqueued, which tells the stream to drop the subscription.
+
+class WeakSubscription extends Subscription {
+
+    private final WeakReference<StockPriceObserver> reference;
+    private final Subscription subscription;
+
+    WeakSubscription(StockPriceObserver observer,
+                     ReferenceQueue<StockPriceObserver> queue,
+                     Function<StockPriceObserver, Subscription> subscribe) {
+        super(null);
+        this.reference = new WeakReference<>(observer, queue);
+        this.subscription = subscribe.apply(this::deliver);
+    }
+
+    @Override
+    StockPriceObserver getObserver() {
+        return reference.get();
+    }
+
+    @Override
+    ObserverStatistics getStatistics() {
+        return subscription.getStatistics();
+    }
+
+    @Override
+    void enableStatistics(String observerName) {
+        subscription.enableStatistics(observerName);
+    }
+
+    @Override
+    void disableStatistics() {
+        subscription.disableStatistics();
+    }
+
+    @Override
+    int getQueueDepth() {
+        return subscription.getQueueDepth();
+    }
+
+    @Override
+    long getDroppedCount() {
+        return subscription.getDroppedCount();
+    }
+
+    @Override
+    void publish(StockPriceEvent event) {
+        subscription.publish(event);
+    }
+
+    @Override
+    void close() {
+        subscription.close();
+    }
+
+    private void deliver(StockPriceEvent event) {
+        StockPriceObserver observer = reference.get();
+        if (observer != null) {
+            observer.update(event);
+        }
+    }
+}
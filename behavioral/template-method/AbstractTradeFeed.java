@@ -1,20 +1,49 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
 
 public abstract class AbstractTradeFeed {
 
-    public String generate(List<Trade> trades) {
-        List<Trade> filteredTrades = filter(trades);
+    private static final int BUFFER_SIZE = 8192;
 
+    public String generate(List<Trade> trades) {
         StringBuilder feed = new StringBuilder();
-        feed.append(getHeader());
-        feed.append(getBody(filteredTrades));
-        feed.append(getFooter(filteredTrades.size()));
+        try {
+            generate(trades, feed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
         return feed.toString();
     }
 
-    abstract String getHeader();
-    abstract String getFooter(int feedSize);
-    abstract String getBody(List<Trade> trades);
-    abstract List<Trade> filter(List<Trade> trades);
+    // Writes the feed straight to the sink, one trade at a time, so that the
+    // memory used does not depend on the number of trades.
+    public void generate(Iterable<Trade> trades, Appendable feed)
+            throws IOException {
+        writeHeader(feed);
+        int feedSize = 0;
+        for (Trade trade : trades) {
+            if (accept(trade)) {
+                writeTrade(trade, feed);
+                feedSize++;
+            }
+        }
+        writeFooter(feedSize, feed);
+    }
+
+    // Encodes the feed as UTF-8 through a fixed size buffer, which is written
+    // to the channel whenever it fills up. The channel is left open.
+    public void generate(Iterable<Trade> trades, WritableByteChannel channel)
+            throws IOException {
+        ChannelAppendable feed = new ChannelAppendable(channel, BUFFER_SIZE);
+        generate(trades, feed);
+        feed.finish();
+    }
+
+    abstract boolean accept(Trade trade);
+    abstract void writeHeader(Appendable feed) throws IOException;
+    abstract void writeTrade(Trade trade, Appendable feed) throws IOException;
+    abstract void writeFooter(int feedSize, Appendable feed) throws IOException;
 }
 
@@ -0,0 +1,85 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+// Collects characters in a reusable buffer and, whenever it is full, encodes
+// them as UTF-8 into a second reusable buffer that is written to the channel.
+// A surrogate pair split across two buffers is kept back until its second
+// half arrives.
+
+class ChannelAppendable implements Appendable {
+
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final CharBuffer chars;
+    private final ByteBuffer bytes;
+
+    ChannelAppendable(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.chars = CharBuffer.allocate(bufferSize);
+        this.bytes = ByteBuffer.allocate(
+            (int) (bufferSize * encoder.maxBytesPerChar()));
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+        return csq == null ? append("null", 0, 4)
+                           : append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end)
+            throws IOException {
+        if (csq == null) {
+            return append("null", start, end);
+        }
+        for (int i = start; i < end; i++) {
+            append(csq.charAt(i));
+        }
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        chars.put(c);
+        return this;
+    }
+
+    // Writes out everything appended so far. Nothing may be appended after.
+    void finish() throws IOException {
+        encode(true);
+        while (encoder.flush(bytes).isOverflow()) {
+            write();
+        }
+        write();
+    }
+
+    private void encode(boolean endOfInput) throws IOException {
+        chars.flip();
+        CoderResult result;
+        while ((result = encoder.encode(chars, bytes, endOfInput))
+                   .isOverflow()) {
+            write();
+        }
+        if (result.isError()) {
+            result.throwException();
+        }
+        chars.compact();
+        write();
+    }
+
+    private void write() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
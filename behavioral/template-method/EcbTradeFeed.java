@@ -1,37 +1,35 @@
-import java.util.List;
+import java.io.IOException;
 
 public class EcbTradeFeed extends AbstractTradeFeed {
 
     @Override
-    List<Trade> filter(List<Trade> trades) {
-        return trades;
+    boolean accept(Trade trade) {
+        return true;
     }
 
     @Override
-    String getHeader() {
-        return "European Central Bank Trade Feed\n" +
-               "TRADE_ID,RIC,PRICE,QUANTITY\n";
+    void writeHeader(Appendable feed) throws IOException {
+        feed.append("European Central Bank Trade Feed\n")
+            .append("TRADE_ID,RIC,PRICE,QUANTITY\n");
     }
 
     @Override
-    String getBody(List<Trade> trades) {
-        StringBuilder body = new StringBuilder();
-        for (Trade trade : trades) {
-            body.append(trade.getId())
-                .append(',')
-                .append(trade.getStockCode())
-                .append(',')
-                .append(trade.getPrice())
-                .append(',')
-                .append(trade.getQuantity())
-                .append('\n');
-        }
-        return body.toString();
+    void writeTrade(Trade trade, Appendable feed) throws IOException {
+        feed.append(String.valueOf(trade.getId()))
+            .append(',')
+            .append(trade.getStockCode())
+            .append(',')
+            .append(String.valueOf(trade.getPrice()))
+            .append(',')
+            .append(String.valueOf(trade.getQuantity()))
+            .append('\n');
     }
 
     @Override
-    String getFooter(int feedSize) {
-        return "RECORD_COUNT:" + feedSize + "\n";
+    void writeFooter(int feedSize, Appendable feed) throws IOException {
+        feed.append("RECORD_COUNT:")
+            .append(String.valueOf(feedSize))
+            .append('\n');
     }
 }
 
@@ -1,37 +1,33 @@
-import java.util.List;
-import java.util.stream.Collectors;
+import java.io.IOException;
 
 public class FcaTradeFeed extends AbstractTradeFeed {
 
     @Override
-    List<Trade> filter(List<Trade> trades) {
-        return trades.stream().filter(t -> t.getStockCode().endsWith(".L"))
-                              .collect(Collectors.toList());
+    boolean accept(Trade trade) {
+        return trade.getStockCode().endsWith(".L");
     }
 
     @Override
-    String getHeader() {
-        return "Financial Conduct Authority Trade Feed\n" +
-               "TRADE_ID^STOCK_CODE^AMOUNT\n";
+    void writeHeader(Appendable feed) throws IOException {
+        feed.append("Financial Conduct Authority Trade Feed\n")
+            .append("TRADE_ID^STOCK_CODE^AMOUNT\n");
     }
 
     @Override
-    String getBody(List<Trade> trades) {
-        StringBuilder body = new StringBuilder();
-        for (Trade trade : trades) {
-            body.append(trade.getId())
-                .append('^')
-                .append(trade.getStockCode())
-                .append('^')
-                .append(trade.getQuantity() * trade.getPrice())
-                .append('\n');
-        }
-        return body.toString();
+    void writeTrade(Trade trade, Appendable feed) throws IOException {
+        feed.append(String.valueOf(trade.getId()))
+            .append('^')
+            .append(trade.getStockCode())
+            .append('^')
+            .append(String.valueOf(trade.getQuantity() * trade.getPrice()))
+            .append('\n');
     }
 
     @Override
-    String getFooter(int feedSize) {
-        return "TOTAL_COUNT:" + feedSize + "\n";
+    void writeFooter(int feedSize, Appendable feed) throws IOException {
+        feed.append("TOTAL_COUNT:")
+            .append(String.valueOf(feedSize))
+            .append('\n');
     }
 }
 
@@ -1,35 +1,33 @@
-import java.util.List;
+import java.io.IOException;
 
 public class FedTradeFeed extends AbstractTradeFeed {
 
     @Override
-    List<Trade> filter(List<Trade> trades) {
-        return trades;
+    boolean accept(Trade trade) {
+        return true;
     }
 
     @Override
-    String getHeader() {
-        return "Federal Reserve Bank Trade Feed\n" +
-               "TRADE_ID~RIC~QUANTITY\n";
+    void writeHeader(Appendable feed) throws IOException {
+        feed.append("Federal Reserve Bank Trade Feed\n")
+            .append("TRADE_ID~RIC~QUANTITY\n");
     }
 
     @Override
-    String getBody(List<Trade> trades) {
-        StringBuilder body = new StringBuilder();
-        for (Trade trade : trades) {
-            body.append(trade.getId())
-                .append('~')
-                .append(trade.getStockCode())
-                .append('~')
-                .append(trade.getQuantity())
-                .append('\n');
-        }
-        return body.toString();
+    void writeTrade(Trade trade, Appendable feed) throws IOException {
+        feed.append(String.valueOf(trade.getId()))
+            .append('~')
+            .append(trade.getStockCode())
+            .append('~')
+            .append(String.valueOf(trade.getQuantity()))
+            .append('\n');
     }
 
     @Override
-    String getFooter(int feedSize) {
-        return "FEED_SIZE:" + feedSize + "\n";
+    void writeFooter(int feedSize, Appendable feed) throws IOException {
+        feed.append("FEED_SIZE:")
+            .append(String.valueOf(feedSize))
+            .append('\n');
     }
 }
 
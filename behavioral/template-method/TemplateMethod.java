@@ -1,4 +1,10 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 // The template method pattern is a behavioral software design pattern that
@@ -32,6 +38,11 @@ import java.util.List;
 // to be defined in a separate subclass per regulator. The overall algorithm
 // remains the same and any regulator-specific requirements are implemented in
 // the relevant subclass.
+//
+// A feed can also be written straight to an Appendable, such as a Writer, or
+// to a WritableByteChannel. Trades are then filtered and written one at a
+// time as they are iterated, through a buffer of fixed size, so even a feed
+// of tens of millions of trades never has to be held in memory.
 
 public class TemplateMethod {
 
@@ -64,6 +75,68 @@ public class TemplateMethod {
                 "TOTAL_COUNT:2\n").equals(feed.generate(getTrades()));
     }
 
+    private static boolean testTradeFeed_Appendable() throws IOException {
+        FcaTradeFeed feed = new FcaTradeFeed();
+        StringWriter writer = new StringWriter();
+        feed.generate(getTrades(), writer);
+        return feed.generate(getTrades()).equals(writer.toString());
+    }
+
+    private static boolean testTradeFeed_Channel() throws IOException {
+        List<Trade> trades = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            trades.add(new Trade(i, i % 2 == 0 ? "VOD.L" : "AAPL.OQ",
+                                 i / 4.0, i % 100));
+        }
+        trades.add(new Trade(10_000, "\u00a3\ud83d\udcc8.L", 1.5, 1));
+
+        for (AbstractTradeFeed feed : new AbstractTradeFeed[] {
+                 new EcbTradeFeed(), new FcaTradeFeed(), new FedTradeFeed()}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            feed.generate(trades, Channels.newChannel(bytes));
+            if (!feed.generate(trades).equals(
+                    bytes.toString(StandardCharsets.UTF_8))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean testTradeFeed_Streaming() throws IOException {
+        Iterable<Trade> trades = () -> new Iterator<Trade>() {
+            private int id = 0;
+
+            public boolean hasNext() {
+                return id < 1_000_000;
+            }
+
+            public Trade next() {
+                id++;
+                return new Trade(id, "VOD.L", 217.0, 10);
+            }
+        };
+        long[] size = new long[1];
+        StringBuilder footer = new StringBuilder();
+        new EcbTradeFeed().generate(trades, new Appendable() {
+            public Appendable append(CharSequence csq) {
+                return append(csq, 0, csq.length());
+            }
+
+            public Appendable append(CharSequence csq, int start, int end) {
+                size[0] += end - start;
+                footer.append(csq, start, end);
+                footer.delete(0, Math.max(0, footer.length() - 32));
+                return this;
+            }
+
+            public Appendable append(char c) {
+                return append(String.valueOf(c));
+            }
+        });
+        return footer.toString().endsWith("RECORD_COUNT:1000000\n") &&
+               size[0] > 20_000_000;
+    }
+
     private static List<Trade> getTrades() {
         List<Trade> trades = new ArrayList<>();
         trades.add(new Trade(1, "VOD.L", 217.0, 10));
@@ -72,7 +145,7 @@ public class TemplateMethod {
         return trades;
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         int counter = 0;
         if (!testEcbTradeFeed()) {
             System.out.println("ECB trade feed test failed!");
@@ -86,6 +159,18 @@ public class TemplateMethod {
             System.out.println("FCA trade feed test failed!");
             counter++;
         }
+        if (!testTradeFeed_Appendable()) {
+            System.out.println("Trade feed appendable test failed!");
+            counter++;
+        }
+        if (!testTradeFeed_Channel()) {
+            System.out.println("Trade feed channel test failed!");
+            counter++;
+        }
+        if (!testTradeFeed_Streaming()) {
+            System.out.println("Trade feed streaming test failed!");
+            counter++;
+        }
         System.out.println(counter + " tests failed.");
     }
 }